@@ -0,0 +1,131 @@
+package org.nocrala.tools.texttablefmt;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+
+import org.nocrala.tools.texttablefmt.CellStyle.HorizontalAlign;
+
+/**
+ * Builds the sample contents shared by all benchmarks.
+ */
+class BenchData {
+
+  private static final char ESC = 27;
+
+  private static final String[] COLORS = { ESC + "[31m", ESC + "[32m",
+      ESC + "[1;33m", ESC + "[34m" };
+
+  private static final String RESET = ESC + "[0m";
+
+  private static final CellStyle LEFT = new CellStyle(HorizontalAlign.left);
+
+  private static final CellStyle RIGHT = new CellStyle(HorizontalAlign.right);
+
+  static String content(final int row, final int col, final boolean ansi) {
+    String txt = (col % 2 == 0) ? "cell-" + row + "-" + col : Integer
+        .toString(row * 31 + col * 7);
+    if (ansi) {
+      return COLORS[(row + col) % COLORS.length] + txt + RESET;
+    }
+    return txt;
+  }
+
+  static CellStyle style(final int col) {
+    return col % 2 == 0 ? LEFT : RIGHT;
+  }
+
+  /**
+   * Returns the span of the cell starting at <code>col</code>. Every other row
+   * starts with a spanning cell when <code>colSpan</code> is greater than one.
+   */
+  static int span(final int row, final int col, final int columns,
+      final int colSpan) {
+    if (colSpan > 1 && col == 0 && row % 2 == 1) {
+      return Math.min(colSpan, columns);
+    }
+    return 1;
+  }
+
+  static Table table(final int rows, final int columns, final int colSpan,
+      final boolean ansi, final BorderStyle borderStyle,
+      final ShownBorders shownBorders) {
+    Table t = new Table(columns, borderStyle, shownBorders);
+    for (int r = 0; r < rows; r++) {
+      int c = 0;
+      while (c < columns) {
+        int span = span(r, c, columns, colSpan);
+        t.addCell(content(r, c, ansi), style(c), span);
+        c = c + span;
+      }
+    }
+    return t;
+  }
+
+  static void stream(final StreamingTable t, final int rows,
+      final int columns, final int colSpan, final boolean ansi)
+      throws IOException {
+    for (int r = 0; r < rows; r++) {
+      int c = 0;
+      while (c < columns) {
+        int span = span(r, c, columns, colSpan);
+        t.addCell(content(r, c, ansi), style(c), span);
+        c = c + span;
+      }
+    }
+    t.finishTable();
+  }
+
+  static Row row(final int row, final int columns, final int colSpan,
+      final boolean ansi) {
+    Row r = new Row();
+    int c = 0;
+    while (c < columns) {
+      int span = span(row, c, columns, colSpan);
+      r.addCell(content(row, c, ansi), style(c), span);
+      c = c + span;
+    }
+    return r;
+  }
+
+  static BorderStyle borderStyle(final String name) {
+    try {
+      Field f = BorderStyle.class.getField(name);
+      return (BorderStyle) f.get(null);
+    } catch (NoSuchFieldException e) {
+      throw new IllegalArgumentException("Unknown border style: " + name);
+    } catch (IllegalAccessException e) {
+      throw new IllegalArgumentException("Unknown border style: " + name);
+    }
+  }
+
+  /**
+   * Appendable that discards everything, so streaming benchmarks measure the
+   * table and not the sink.
+   */
+  static class NullAppendable implements Appendable {
+
+    private long length;
+
+    public Appendable append(final CharSequence csq) {
+      this.length = this.length + csq.length();
+      return this;
+    }
+
+    public Appendable append(final CharSequence csq, final int start,
+        final int end) {
+      this.length = this.length + end - start;
+      return this;
+    }
+
+    public Appendable append(final char c) {
+      this.length++;
+      return this;
+    }
+
+    long getLength() {
+      return this.length;
+    }
+
+  }
+
+}
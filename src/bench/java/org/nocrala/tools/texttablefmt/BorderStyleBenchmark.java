@@ -0,0 +1,67 @@
+package org.nocrala.tools.texttablefmt;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures <code>Table.render()</code> with every predefined
+ * <code>BorderStyle</code>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BorderStyleBenchmark {
+
+  @Param( { "DEMO", "BLANKS", "DOTS", "ASTERISKS", "HORIZONTAL_ONLY",
+      "CLASSIC", "CLASSIC_WIDE", "CLASSIC_LIGHT", "CLASSIC_LIGHT_WIDE",
+      "CLASSIC_COMPATIBLE", "CLASSIC_COMPATIBLE_WIDE",
+      "CLASSIC_COMPATIBLE_LIGHT_WIDE", "HEAVY", "HEAVY_TOP_AND_BOTTOM",
+      "DESIGN_FORMAL", "DESIGN_FORMAL_INVERSE", "DESIGN_CASUAL",
+      "DESIGN_CAFE", "DESIGN_SLASH", "DESIGN_TUBES", "DESIGN_DOTS",
+      "DESIGN_DIM", "DESIGN_CURTAIN", "DESIGN_CURTAIN_HEAVY",
+      "DESIGN_PAPYRUS", "DESIGN_FORMAL_WIDE", "DESIGN_FORMAL_INVERSE_WIDE",
+      "DESIGN_CASUAL_WIDE", "DESIGN_CAFE_WIDE", "DESIGN_SLASH_WIDE",
+      "DESIGN_TUBES_WIDE", "DESIGN_DOTS_WIDE", "DESIGN_DIM_WIDE",
+      "DESIGN_CURTAIN_WIDE", "DESIGN_CURTAIN_HEAVY_WIDE", "UNICODE_BOX",
+      "UNICODE_ROUND_BOX", "UNICODE_HEAVY_BOX", "UNICODE_BOX_HEAVY_BORDER",
+      "UNICODE_DOUBLE_BOX", "UNICODE_BOX_DOUBLE_BORDER", "UNICODE_BOX_WIDE",
+      "UNICODE_ROUND_BOX_WIDE", "UNICODE_HEAVY_BOX_WIDE",
+      "UNICODE_BOX_HEAVY_BORDER_WIDE", "UNICODE_DOUBLE_BOX_WIDE",
+      "UNICODE_BOX_DOUBLE_BORDER_WIDE" })
+  public String borderStyle;
+
+  @Param( { "1000" })
+  public int rows;
+
+  @Param( { "8" })
+  public int columns;
+
+  private Table table;
+
+  @Setup
+  public void setUp() {
+    BorderStyle style = BenchData.borderStyle(this.borderStyle);
+    this.table = BenchData.table(this.rows, this.columns, 2, false, style,
+        ShownBorders.ALL);
+  }
+
+  @Benchmark
+  public String render() {
+    return this.table.render();
+  }
+
+}
@@ -0,0 +1,89 @@
+package org.nocrala.tools.texttablefmt;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Loads a table from rows already fetched, as they would come from a JDBC
+ * result set, comparing one <code>addCell()</code> per cell with the bulk
+ * <code>addRow()</code>, <code>addRows()</code> and
+ * <code>addColumnarBatch()</code> methods.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BulkLoadBenchmark {
+
+  @Param( { "10000" })
+  public int rows;
+
+  @Param( { "20" })
+  public int columns;
+
+  private String[][] byRow;
+
+  private String[][] byColumn;
+
+  @Setup
+  public void setUp() {
+    this.byRow = new String[this.rows][this.columns];
+    this.byColumn = new String[this.columns][this.rows];
+    for (int r = 0; r < this.rows; r++) {
+      for (int c = 0; c < this.columns; c++) {
+        String content = BenchData.content(r, c, false);
+        this.byRow[r][c] = content;
+        this.byColumn[c][r] = content;
+      }
+    }
+  }
+
+  @Benchmark
+  public Table addCell() {
+    Table t = new Table(this.columns);
+    for (String[] row : this.byRow) {
+      for (String content : row) {
+        t.addCell(content);
+      }
+    }
+    return t;
+  }
+
+  @Benchmark
+  public Table addRow() {
+    Table t = new Table(this.columns);
+    for (String[] row : this.byRow) {
+      t.addRow(row);
+    }
+    return t;
+  }
+
+  @Benchmark
+  public Table addRows() {
+    Table t = new Table(this.columns);
+    t.addRows(Arrays.asList(this.byRow));
+    return t;
+  }
+
+  @Benchmark
+  public Table addColumnarBatch() {
+    Table t = new Table(this.columns);
+    t.addColumnarBatch(this.byColumn);
+    return t;
+  }
+
+}
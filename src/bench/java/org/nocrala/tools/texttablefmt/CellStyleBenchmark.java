@@ -0,0 +1,70 @@
+package org.nocrala.tools.texttablefmt;
+
+import java.util.concurrent.TimeUnit;
+
+import org.nocrala.tools.texttablefmt.CellStyle.AbbreviationStyle;
+import org.nocrala.tools.texttablefmt.CellStyle.HorizontalAlign;
+import org.nocrala.tools.texttablefmt.CellStyle.NullStyle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures <code>CellStyle.render()</code> and <code>getWidth()</code> for
+ * padded, exact and abbreviated cells.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CellStyleBenchmark {
+
+  @Param( { "left", "center", "right" })
+  public HorizontalAlign align;
+
+  @Param( { "crop", "dots" })
+  public AbbreviationStyle abbreviation;
+
+  @Param( { "false", "true" })
+  public boolean ansi;
+
+  /** Rendered width as a percentage of the content width. */
+  @Param( { "50", "100", "200" })
+  public int widthPercent;
+
+  private CellStyle style;
+
+  private String content;
+
+  private int width;
+
+  @Setup
+  public void setUp() {
+    this.style = new CellStyle(this.align, this.abbreviation,
+        NullStyle.emptyString, true);
+    this.content = BenchData.content(123, 4, this.ansi)
+        + " some longer text";
+    this.width = this.style.getWidth(this.content) * this.widthPercent / 100;
+  }
+
+  @Benchmark
+  public String render() {
+    return this.style.render(this.content, this.width);
+  }
+
+  @Benchmark
+  public int getWidth() {
+    return this.style.getWidth(this.content);
+  }
+
+}
@@ -0,0 +1,68 @@
+package org.nocrala.tools.texttablefmt;
+
+import java.util.concurrent.TimeUnit;
+
+import org.nocrala.tools.texttablefmt.CellStyle.AbbreviationStyle;
+import org.nocrala.tools.texttablefmt.CellStyle.HorizontalAlign;
+import org.nocrala.tools.texttablefmt.CellStyle.NullStyle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the width pass (<code>CellStyle.getWidth()</code>) over many cells
+ * with each <code>DisplayWidth</code> strategy, for ASCII and CJK contents.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DisplayWidthBenchmark {
+
+  private static final int CELLS = 10000;
+
+  @Param( { "UNICODE", "CHARS" })
+  public String displayWidth;
+
+  @Param( { "ascii", "cjk" })
+  public String contents;
+
+  private CellStyle style;
+
+  private String[] cells;
+
+  @Setup
+  public void setUp() {
+    DisplayWidth dw = "CHARS".equals(this.displayWidth) ? DisplayWidth.CHARS
+        : DisplayWidth.UNICODE;
+    this.style = new CellStyle(HorizontalAlign.left, AbbreviationStyle.dots,
+        NullStyle.emptyString, true, dw);
+    this.cells = new String[CELLS];
+    for (int i = 0; i < CELLS; i++) {
+      this.cells[i] = "ascii".equals(this.contents) ? BenchData.content(i, 0,
+          false) : "\u6771\u4eac-" + i + "-\uc11c\uc6b8";
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(CELLS)
+  public int getWidth() {
+    int total = 0;
+    for (String cell : this.cells) {
+      total = total + this.style.getWidth(cell);
+    }
+    return total;
+  }
+
+}
@@ -0,0 +1,72 @@
+package org.nocrala.tools.texttablefmt;
+
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the sequential and the parallel rendering of a big table with
+ * column widths already calculated, for different pool sizes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParallelRenderBenchmark {
+
+  @Param( { "100000" })
+  public int rows;
+
+  @Param( { "20" })
+  public int columns;
+
+  @Param( { "2", "4", "8", "16" })
+  public int threads;
+
+  private Table table;
+
+  private ForkJoinPool pool;
+
+  @Setup
+  public void setUp() {
+    this.table = BenchData.table(this.rows, this.columns, 1, false,
+        BorderStyle.CLASSIC, ShownBorders.ALL);
+    this.table.render(); // calculates the column widths
+    this.pool = new ForkJoinPool(this.threads);
+  }
+
+  @TearDown
+  public void tearDown() {
+    this.pool.shutdown();
+  }
+
+  @Benchmark
+  public long renderSequential() throws IOException {
+    BenchData.NullAppendable ap = new BenchData.NullAppendable();
+    this.table.render(ap);
+    return ap.getLength();
+  }
+
+  @Benchmark
+  public long renderParallel() throws IOException {
+    BenchData.NullAppendable ap = new BenchData.NullAppendable();
+    this.table.render(ap, this.pool);
+    return ap.getLength();
+  }
+
+}
@@ -0,0 +1,60 @@
+package org.nocrala.tools.texttablefmt;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Renders a 1M-cell table whose column widths are already calculated, so only
+ * the row rendering pipeline is measured. Run it with the GC profiler to see
+ * the allocation rate:
+ * 
+ * <pre>
+ * ant bench -Dbench.args="-prof gc RenderAllocationBenchmark"
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RenderAllocationBenchmark {
+
+  @Param( { "50000" })
+  public int rows;
+
+  @Param( { "20" })
+  public int columns;
+
+  @Param( { "false", "true" })
+  public boolean ansi;
+
+  private Table table;
+
+  @Setup
+  public void setUp() {
+    this.table = BenchData.table(this.rows, this.columns, 1, this.ansi,
+        BorderStyle.CLASSIC, ShownBorders.ALL);
+    this.table.render(); // calculates the column widths
+  }
+
+  @Benchmark
+  public long renderRows() throws IOException {
+    BenchData.NullAppendable ap = new BenchData.NullAppendable();
+    this.table.tableStyle.renderTable(this.table, ap);
+    return ap.getLength();
+  }
+
+}
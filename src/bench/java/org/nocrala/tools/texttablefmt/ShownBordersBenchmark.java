@@ -0,0 +1,65 @@
+package org.nocrala.tools.texttablefmt;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures <code>ShownBorders.renderMiddleSeparator()</code> between two rows,
+ * with and without colspans.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShownBordersBenchmark {
+
+  @Param( { "4", "20", "200" })
+  public int columns;
+
+  @Param( { "1", "3" })
+  public int colSpan;
+
+  @Param( { "CLASSIC", "CLASSIC_WIDE", "UNICODE_BOX" })
+  public String borderStyle;
+
+  private BorderStyle style;
+
+  private List<Column> cols;
+
+  private Row upper;
+
+  private Row lower;
+
+  @Setup
+  public void setUp() {
+    this.style = BenchData.borderStyle(this.borderStyle);
+    this.cols = new ArrayList<Column>();
+    for (int i = 0; i < this.columns; i++) {
+      this.cols.add(new Column(8));
+    }
+    this.upper = BenchData.row(0, this.columns, this.colSpan, false);
+    this.lower = BenchData.row(1, this.columns, this.colSpan, false);
+  }
+
+  @Benchmark
+  public String renderMiddleSeparator() {
+    return ShownBorders.ALL.renderMiddleSeparator(this.cols, this.style,
+        this.upper, this.lower);
+  }
+
+}
@@ -0,0 +1,50 @@
+package org.nocrala.tools.texttablefmt;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures <code>StreamingTable.addCell()</code> and
+ * <code>finishTable()</code>, writing to a discarding sink.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StreamingTableBenchmark {
+
+  @Param( { "10", "1000", "100000" })
+  public int rows;
+
+  @Param( { "4", "20" })
+  public int columns;
+
+  @Param( { "1", "3" })
+  public int colSpan;
+
+  @Param( { "false", "true" })
+  public boolean ansi;
+
+  @Benchmark
+  public long addCellAndFinish() throws IOException {
+    BenchData.NullAppendable ap = new BenchData.NullAppendable();
+    StreamingTable t = new StreamingTable(ap, this.columns,
+        BorderStyle.CLASSIC, ShownBorders.ALL);
+    BenchData.stream(t, this.rows, this.columns, this.colSpan, this.ansi);
+    return ap.getLength();
+  }
+
+}
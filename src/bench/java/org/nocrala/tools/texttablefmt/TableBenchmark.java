@@ -0,0 +1,61 @@
+package org.nocrala.tools.texttablefmt;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures <code>Table.render()</code> and
+ * <code>Table.renderAsStringArray()</code> on tables of different shapes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TableBenchmark {
+
+  @Param( { "10", "1000", "10000" })
+  public int rows;
+
+  @Param( { "4", "20" })
+  public int columns;
+
+  @Param( { "1", "3" })
+  public int colSpan;
+
+  @Param( { "false", "true" })
+  public boolean ansi;
+
+  private Table table;
+
+  @Setup
+  public void setUp() {
+    // Built once: the widest cells are tracked as they are added, so
+    // repeated renderings measure the rendering itself.
+    this.table = BenchData.table(this.rows, this.columns, this.colSpan,
+        this.ansi, BorderStyle.CLASSIC, ShownBorders.ALL);
+  }
+
+  @Benchmark
+  public String render() {
+    return this.table.render();
+  }
+
+  @Benchmark
+  public String[] renderAsStringArray() {
+    return this.table.renderAsStringArray();
+  }
+
+}
@@ -0,0 +1,354 @@
+package org.nocrala.tools.texttablefmt;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * <p>
+ * <code>Appendable</code> that encodes the rendered text into bytes and writes
+ * them to an <code>OutputStream</code> or to a
+ * <code>WritableByteChannel</code>, like a socket or a file. Pass it to a
+ * <code>StreamingTable</code>, <code>SpillingTable</code> or to
+ * <code>Table.render(Appendable)</code>.
+ * </p>
+ *
+ * <p>
+ * Characters are encoded into a byte buffer, that is written when full. When
+ * the charset is ASCII compatible (like UTF-8, the default) ASCII characters
+ * are copied straight into the buffer; only other characters go through the
+ * charset encoder. Tables render their border tiles and separator lines into
+ * a sink already encoded, and only the cells with non-ASCII characters are
+ * encoded.
+ * </p>
+ *
+ * <p>
+ * As an example, the following code:
+ * </p>
+ *
+ * <pre class='example'>
+ *
+ * ByteSink sink = new ByteSink(socket.getOutputStream());
+ * table.render(sink);
+ * sink.flush();
+ * </pre>
+ */
+public class ByteSink implements Appendable, Flushable, Closeable {
+
+  private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+  private static final int CHARS_SIZE = 4096;
+
+  static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private OutputStream out;
+
+  private WritableByteChannel channel;
+
+  private Charset charset;
+
+  private CharsetEncoder encoder;
+
+  private boolean asciiCompatible;
+
+  private byte[] bytes;
+
+  private int count;
+
+  private ByteBuffer buffer;
+
+  private char[] chars;
+
+  // High surrogate at the end of the last appended text, waiting for its
+  // low surrogate.
+
+  private char pendingSurrogate;
+
+  private long bytesWritten;
+
+  private boolean closed;
+
+  /**
+   * Creates a sink that writes to an output stream using UTF-8.
+   *
+   * @param out
+   *          Output stream where to write.
+   */
+  public ByteSink(final OutputStream out) {
+    this(out, UTF_8);
+  }
+
+  /**
+   * Creates a sink that writes to an output stream using the specified
+   * charset.
+   *
+   * @param out
+   *          Output stream where to write.
+   * @param charset
+   *          Charset used to encode the text.
+   */
+  public ByteSink(final OutputStream out, final Charset charset) {
+    this.out = out;
+    this.channel = null;
+    this.buffer = null;
+    initialize(charset, DEFAULT_BUFFER_SIZE);
+  }
+
+  /**
+   * Creates a sink that writes to a channel. The buffered bytes are written
+   * through a buffer that wraps them, without copying.
+   *
+   * @param channel
+   *          Channel where to write.
+   * @param charset
+   *          Charset used to encode the text.
+   * @param bufferSize
+   *          Bytes written to the channel at a time.
+   */
+  public ByteSink(final WritableByteChannel channel, final Charset charset,
+      final int bufferSize) {
+    this.out = null;
+    this.channel = channel;
+    initialize(charset, bufferSize);
+    this.buffer = ByteBuffer.wrap(this.bytes);
+  }
+
+  private void initialize(final Charset charset, final int bufferSize) {
+    this.charset = charset;
+    this.encoder = charset.newEncoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    String name = charset.name();
+    this.asciiCompatible = "UTF-8".equals(name) || "US-ASCII".equals(name)
+        || "ISO-8859-1".equals(name);
+    this.bytes = new byte[Math.max(bufferSize, 16)];
+    this.count = 0;
+    this.chars = new char[CHARS_SIZE];
+    this.pendingSurrogate = 0;
+    this.bytesWritten = 0;
+    this.closed = false;
+  }
+
+  public Appendable append(final CharSequence csq) throws IOException {
+    CharSequence txt = csq != null ? csq : "null";
+    return append(txt, 0, txt.length());
+  }
+
+  public Appendable append(final CharSequence csq, final int start,
+      final int end) throws IOException {
+    CharSequence txt = csq != null ? csq : "null";
+    int pos = start;
+    while (pos < end) {
+      int n = Math.min(end - pos, this.chars.length);
+      if (txt instanceof StringBuilder) {
+        ((StringBuilder) txt).getChars(pos, pos + n, this.chars, 0);
+      } else if (txt instanceof String) {
+        ((String) txt).getChars(pos, pos + n, this.chars, 0);
+      } else {
+        for (int i = 0; i < n; i++) {
+          this.chars[i] = txt.charAt(pos + i);
+        }
+      }
+      write(this.chars, 0, n);
+      pos = pos + n;
+    }
+    return this;
+  }
+
+  public Appendable append(final char c) throws IOException {
+    this.chars[0] = c;
+    write(this.chars, 0, 1);
+    return this;
+  }
+
+  Charset getCharset() {
+    return this.charset;
+  }
+
+  /**
+   * Writes bytes already encoded with the charset of this sink.
+   */
+  void writeEncoded(final byte[] b) throws IOException {
+    checkOpen();
+    if (this.pendingSurrogate != 0) {
+      // Not followed by its low surrogate.
+      this.pendingSurrogate = 0;
+      writeEncoded(this.encoder.replacement());
+    }
+    int off = 0;
+    while (off < b.length) {
+      int n = Math.min(b.length - off, this.bytes.length - this.count);
+      System.arraycopy(b, off, this.bytes, this.count, n);
+      this.count = this.count + n;
+      off = off + n;
+      if (this.count == this.bytes.length) {
+        writeBuffer();
+      }
+    }
+  }
+
+  private void write(final char[] cbuf, final int off, final int len)
+      throws IOException {
+    checkOpen();
+    int end = off + len;
+    int i = off;
+    while (i < end) {
+      if (this.pendingSurrogate == 0 && this.asciiCompatible) {
+        // ASCII fast path
+        byte[] b = this.bytes;
+        int c = this.count;
+        int limit = Math.min(end, i + (b.length - c));
+        while (i < limit && cbuf[i] < 0x80) {
+          b[c++] = (byte) cbuf[i++];
+        }
+        this.count = c;
+        if (c == b.length) {
+          writeBuffer();
+          continue;
+        }
+        if (i == end) {
+          break;
+        }
+      }
+      // Other characters, until the next ASCII one
+      int runEnd = i + 1;
+      if (this.asciiCompatible) {
+        while (runEnd < end && cbuf[runEnd] >= 0x80) {
+          runEnd++;
+        }
+      } else {
+        runEnd = end;
+      }
+      encode(cbuf, i, runEnd);
+      i = runEnd;
+    }
+  }
+
+  private void encode(final char[] cbuf, final int start, final int end)
+      throws IOException {
+    CharBuffer in;
+    if (this.pendingSurrogate != 0) {
+      char[] joined = new char[end - start + 1];
+      joined[0] = this.pendingSurrogate;
+      System.arraycopy(cbuf, start, joined, 1, end - start);
+      in = CharBuffer.wrap(joined);
+      this.pendingSurrogate = 0;
+    } else {
+      in = CharBuffer.wrap(cbuf, start, end - start);
+    }
+    encode(in, false);
+    if (in.remaining() == 1
+        && Character.isHighSurrogate(in.get(in.position()))) {
+      this.pendingSurrogate = in.get();
+    }
+  }
+
+  private void encode(final CharBuffer in, final boolean endOfInput)
+      throws IOException {
+    while (true) {
+      ByteBuffer bb = ByteBuffer.wrap(this.bytes, this.count,
+          this.bytes.length - this.count);
+      CoderResult result = this.encoder.encode(in, bb, endOfInput);
+      this.count = bb.position();
+      if (result.isOverflow()) {
+        writeBuffer();
+      } else if (result.isUnderflow()) {
+        return;
+      } else {
+        result.throwException();
+      }
+    }
+  }
+
+  private void writeBuffer() throws IOException {
+    if (this.count == 0) {
+      return;
+    }
+    if (this.channel != null) {
+      this.buffer.clear();
+      this.buffer.limit(this.count);
+      while (this.buffer.hasRemaining()) {
+        this.channel.write(this.buffer);
+      }
+    } else {
+      this.out.write(this.bytes, 0, this.count);
+    }
+    this.bytesWritten = this.bytesWritten + this.count;
+    this.count = 0;
+  }
+
+  private void checkOpen() throws IOException {
+    if (this.closed) {
+      throw new IOException("The sink is closed.");
+    }
+  }
+
+  /**
+   * Writes the buffered bytes, and flushes the output stream if any. A high
+   * surrogate at the end of the text is kept, waiting for its low surrogate.
+   */
+  public void flush() throws IOException {
+    if (!this.closed) {
+      writeBuffer();
+      if (this.out != null) {
+        this.out.flush();
+      }
+    }
+  }
+
+  /**
+   * Writes the buffered bytes and closes the output stream or channel.
+   */
+  public void close() throws IOException {
+    if (this.closed) {
+      return;
+    }
+    try {
+      CharBuffer in;
+      if (this.pendingSurrogate != 0) {
+        in = CharBuffer.wrap(new char[] { this.pendingSurrogate });
+        this.pendingSurrogate = 0;
+      } else {
+        in = CharBuffer.allocate(0);
+      }
+      encode(in, true);
+      while (true) {
+        ByteBuffer bb = ByteBuffer.wrap(this.bytes, this.count,
+            this.bytes.length - this.count);
+        CoderResult result = this.encoder.flush(bb);
+        this.count = bb.position();
+        if (!result.isOverflow()) {
+          break;
+        }
+        writeBuffer();
+      }
+      writeBuffer();
+    } finally {
+      this.closed = true;
+      if (this.channel != null) {
+        this.channel.close();
+      } else {
+        this.out.close();
+      }
+    }
+  }
+
+  /**
+   * Returns the number of bytes written so far, not counting the ones still
+   * buffered.
+   *
+   * @return bytes written.
+   */
+  public long getBytesWritten() {
+    return this.bytesWritten;
+  }
+
+}
@@ -8,21 +8,43 @@ class Cell {
 
   private int colSpan;
 
+  // Measured once, when the cell is created, and reused by the column width
+  // calculation and the rendering.
+
+  private int width;
+
+  private boolean formatted;
+
   Cell(final String content, final CellStyle style, final int colSpan) {
     this.content = content;
     this.style = style;
     this.colSpan = colSpan;
+    long metrics = style.measure(content);
+    this.width = TerminalText.getWidth(metrics);
+    this.formatted = TerminalText.isFormatted(metrics);
+  }
+
+  Cell(final String content, final CellStyle style, final int colSpan,
+      final int width, final boolean formatted) {
+    this.content = content;
+    this.style = style;
+    this.colSpan = colSpan;
+    this.width = width;
+    this.formatted = formatted;
   }
 
   int getTightWidth(final int maxWidth) {
-    int width = this.style.getWidth(this.content);
-    return width > maxWidth ? maxWidth : width;
+    return this.width > maxWidth ? maxWidth : this.width;
   }
 
   public String render(final int width) {
-    String r = this.style.render(this.content, width);
-    // System.out.println("r=" + r);
-    return r;
+    StringBuilder sb = new StringBuilder();
+    render(sb, width);
+    return sb.toString();
+  }
+
+  void render(final StringBuilder sb, final int width) {
+    this.style.render(sb, this.content, width, this.width, this.formatted);
   }
 
   public String getContent() {
@@ -37,4 +59,12 @@ class Cell {
     return this.colSpan;
   }
 
+  int getWidth() {
+    return this.width;
+  }
+
+  boolean isFormatted() {
+    return this.formatted;
+  }
+
 }
@@ -0,0 +1,306 @@
+package org.nocrala.tools.texttablefmt;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * Column-oriented storage for cells. Instead of an object per cell, each cell
+ * characteristic is kept in its own array, indexed by the cell position:
+ * contents in a <code>String[]</code>, measured widths in an
+ * <code>int[]</code>, colspans in a <code>byte[]</code> and style ids in a
+ * <code>short[]</code>.
+ * </p>
+ *
+ * <p>
+ * Styles are interned: plain <code>CellStyle</code>s with the same
+ * characteristics share one entry of the style table, no matter how many
+ * instances were used to add the cells. The style instances already seen are
+ * remembered too, so adding a cell with one of them doesn't allocate. Once
+ * the style table is full, cells with new styles keep a reference to their
+ * style instead.
+ * </p>
+ */
+class CellStore {
+
+  private static final int DEFAULT_CAPACITY = 16;
+
+  // The formatted flag is kept in the sign bit of the width.
+  private static final int FORMATTED = Integer.MIN_VALUE;
+
+  private static final int MAX_STORED_COLSPAN = 0xFF;
+
+  private static final int MAX_STYLES = 0xFFFF;
+
+  // Style id of the cells whose style is not in the style table.
+  private static final int UNSHARED = 0xFFFF;
+
+  private static final int MAX_IDENTITIES = 1024;
+
+  private int size;
+
+  private String[] contents;
+
+  private int[] widths;
+
+  private byte[] colSpans;
+
+  private short[] styleIds;
+
+  // Colspans too wide for a byte, by cell position. Stored as zero in the
+  // byte array.
+
+  private Map<Integer, Integer> wideColSpans;
+
+  // Style table
+
+  private List<CellStyle> styles;
+
+  private Map<Object, Integer> styleIndex;
+
+  private Map<CellStyle, Integer> identityIndex;
+
+  // Styles of the cells with the UNSHARED id, by cell position. Allocated
+  // when the style table gets full.
+
+  private CellStyle[] unsharedStyles;
+
+  private CellStyle lastStyle;
+
+  private int lastStyleId;
+
+  CellStore() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  CellStore(final int initialCapacity) {
+    int capacity = initialCapacity > 0 ? initialCapacity : 1;
+    this.size = 0;
+    this.contents = new String[capacity];
+    this.widths = new int[capacity];
+    this.colSpans = new byte[capacity];
+    this.styleIds = new short[capacity];
+    this.wideColSpans = null;
+    this.styles = new ArrayList<CellStyle>();
+    this.styleIndex = new HashMap<Object, Integer>();
+    this.identityIndex = new IdentityHashMap<CellStyle, Integer>();
+    this.unsharedStyles = null;
+    this.lastStyle = null;
+    this.lastStyleId = -1;
+  }
+
+  /**
+   * Adds a cell, measuring its content. Returns the position of the cell.
+   */
+  int add(final String content, final CellStyle style, final int colSpan) {
+    long metrics = style.measure(content);
+    return add(content, style, colSpan, TerminalText.getWidth(metrics),
+        TerminalText.isFormatted(metrics));
+  }
+
+  /**
+   * Adds an already measured cell. Returns the position of the cell.
+   */
+  int add(final String content, final CellStyle style, final int colSpan,
+      final int width, final boolean formatted) {
+    if (this.size == this.contents.length) {
+      ensureCapacity(this.size + 1);
+    }
+    int index = this.size;
+    this.contents[index] = content;
+    this.widths[index] = formatted ? width | FORMATTED : width;
+    if (colSpan > 0 && colSpan <= MAX_STORED_COLSPAN) {
+      this.colSpans[index] = (byte) colSpan;
+    } else {
+      if (this.wideColSpans == null) {
+        this.wideColSpans = new HashMap<Integer, Integer>();
+      }
+      this.wideColSpans.put(index, colSpan);
+      this.colSpans[index] = 0;
+    }
+    int styleId = intern(style);
+    if (styleId == UNSHARED) {
+      if (this.unsharedStyles == null) {
+        this.unsharedStyles = new CellStyle[this.contents.length];
+      }
+      this.unsharedStyles[index] = style;
+    }
+    this.styleIds[index] = (short) styleId;
+    this.size++;
+    return index;
+  }
+
+  int size() {
+    return this.size;
+  }
+
+  String getContent(final int index) {
+    return this.contents[index];
+  }
+
+  CellStyle getStyle(final int index) {
+    int styleId = this.styleIds[index] & 0xFFFF;
+    if (styleId == UNSHARED) {
+      return this.unsharedStyles[index];
+    }
+    return this.styles.get(styleId);
+  }
+
+  int getColSpan(final int index) {
+    int colSpan = this.colSpans[index] & 0xFF;
+    if (colSpan == 0) {
+      return this.wideColSpans.get(index);
+    }
+    return colSpan;
+  }
+
+  int getWidth(final int index) {
+    return this.widths[index] & ~FORMATTED;
+  }
+
+  boolean isFormatted(final int index) {
+    return (this.widths[index] & FORMATTED) != 0;
+  }
+
+  int getTotalStyles() {
+    return this.styles.size();
+  }
+
+  void render(final int index, final StringBuilder sb, final int width) {
+    getStyle(index).render(sb, this.contents[index], width, getWidth(index),
+        isFormatted(index));
+  }
+
+  /**
+   * Removes all the cells and styles, keeping the arrays to add new ones.
+   */
+  void clear() {
+    Arrays.fill(this.contents, 0, this.size, null);
+    if (this.unsharedStyles != null) {
+      Arrays.fill(this.unsharedStyles, 0, this.size, null);
+    }
+    this.size = 0;
+    if (this.wideColSpans != null) {
+      this.wideColSpans.clear();
+    }
+    this.styles.clear();
+    this.styleIndex.clear();
+    this.identityIndex.clear();
+    this.lastStyle = null;
+    this.lastStyleId = -1;
+  }
+
+  /**
+   * Makes room for at least the specified total number of cells, so they can
+   * be added without growing the arrays again.
+   */
+  void ensureCapacity(final int minCapacity) {
+    if (minCapacity <= this.contents.length) {
+      return;
+    }
+    int capacity = Math.max(this.contents.length * 2, minCapacity);
+    String[] newContents = new String[capacity];
+    System.arraycopy(this.contents, 0, newContents, 0, this.size);
+    this.contents = newContents;
+    int[] newWidths = new int[capacity];
+    System.arraycopy(this.widths, 0, newWidths, 0, this.size);
+    this.widths = newWidths;
+    byte[] newColSpans = new byte[capacity];
+    System.arraycopy(this.colSpans, 0, newColSpans, 0, this.size);
+    this.colSpans = newColSpans;
+    short[] newStyleIds = new short[capacity];
+    System.arraycopy(this.styleIds, 0, newStyleIds, 0, this.size);
+    this.styleIds = newStyleIds;
+    if (this.unsharedStyles != null) {
+      CellStyle[] newUnsharedStyles = new CellStyle[capacity];
+      System.arraycopy(this.unsharedStyles, 0, newUnsharedStyles, 0,
+          this.size);
+      this.unsharedStyles = newUnsharedStyles;
+    }
+  }
+
+  // Style interning
+
+  /**
+   * Returns the id of a style in the style table, adding it if needed, or
+   * <code>UNSHARED</code> if the table is full.
+   */
+  private int intern(final CellStyle style) {
+    if (style == this.lastStyle) {
+      return this.lastStyleId;
+    }
+    Integer id = this.identityIndex.get(style);
+    if (id == null) {
+      Object key = styleKey(style);
+      id = this.styleIndex.get(key);
+      if (id == null) {
+        if (this.styles.size() == MAX_STYLES) {
+          this.lastStyle = style;
+          this.lastStyleId = UNSHARED;
+          return UNSHARED;
+        }
+        id = this.styles.size();
+        this.styles.add(style);
+        this.styleIndex.put(key, id);
+      }
+      if (this.identityIndex.size() < MAX_IDENTITIES) {
+        this.identityIndex.put(style, id);
+      }
+    }
+    this.lastStyle = style;
+    this.lastStyleId = id;
+    return id;
+  }
+
+  /**
+   * Plain styles are identified by their characteristics. Subclasses may
+   * render differently, so they are identified by themselves.
+   */
+  private static Object styleKey(final CellStyle style) {
+    if (style.getClass() != CellStyle.class) {
+      return style;
+    }
+    return new StyleKey(style);
+  }
+
+  private static class StyleKey {
+
+    private CellStyle style;
+
+    StyleKey(final CellStyle style) {
+      this.style = style;
+    }
+
+    public boolean equals(final Object obj) {
+      if (!(obj instanceof StyleKey)) {
+        return false;
+      }
+      CellStyle other = ((StyleKey) obj).style;
+      return this.style.getHorizontalAlign() == other.getHorizontalAlign()
+          && this.style.getAbbreviationStyle() == other.getAbbreviationStyle()
+          && this.style.getNullStyle() == other.getNullStyle()
+          && this.style.isHandleTerminalFormats() == other
+              .isHandleTerminalFormats()
+          && this.style.getDisplayWidth() == other.getDisplayWidth();
+    }
+
+    public int hashCode() {
+      int hash = ordinal(this.style.getHorizontalAlign());
+      hash = hash * 31 + ordinal(this.style.getAbbreviationStyle());
+      hash = hash * 31 + ordinal(this.style.getNullStyle());
+      hash = hash * 31 + (this.style.isHandleTerminalFormats() ? 1 : 0);
+      hash = hash * 31 + System.identityHashCode(this.style.getDisplayWidth());
+      return hash;
+    }
+
+    private static int ordinal(final Enum<?> value) {
+      return value != null ? value.ordinal() : -1;
+    }
+
+  }
+
+}
@@ -7,8 +7,13 @@ import org.nocrala.tools.utils.Filler;
  * Defines how the content of a cell is rendered.
  * </p>
  * 
- * </p>It allows to specify the text alignment, the abbreviation mode and
- * rendering of null values.</p>
+ * </p>It allows to specify the text alignment, the abbreviation mode,
+ * rendering of null values and how the display width of the text is measured.</p>
+ * 
+ * <p>
+ * Styles are immutable. Instead of creating a style per cell, use the shared
+ * instances returned by <code>valueOf()</code>, or reuse the same one.
+ * </p>
  * 
  * @author valarcon
  * 
@@ -24,6 +29,8 @@ public class CellStyle {
 
   private static final boolean DEFAULT_HANDLE_TERMINAL_FORMATS = true;
 
+  private static final DisplayWidth DEFAULT_DISPLAY_WIDTH = DisplayWidth.UNICODE;
+
   /**
    * This enumeration is used to specify how a text is horizontally aligned in a
    * cell.
@@ -60,7 +67,13 @@ public class CellStyle {
      * Will add three dots at the end of the text to show it has been
      * abbreviated.
      */
-    dots
+    dots,
+    /**
+     * Will wrap the text into several lines, at word boundaries and at line
+     * breaks. The width of the cell is the width of its widest line. Only
+     * tables wrap cells; elsewhere the text is abbreviated with dots.
+     */
+    wrap
   };
 
   private static final String NULL_TEXT = "<null>";
@@ -83,13 +96,46 @@ public class CellStyle {
     nullText
   };
 
-  private HorizontalAlign horAlign;
+  // Shared instances, one per combination of characteristics, with the
+  // default display width.
+
+  private static final CellStyle[] SHARED = new CellStyle[HorizontalAlign
+      .values().length
+      * AbbreviationStyle.values().length * NullStyle.values().length * 2];
+
+  static {
+    boolean[] handleTerminalFormats = { false, true };
+    for (HorizontalAlign horAlign : HorizontalAlign.values()) {
+      for (AbbreviationStyle abbStyle : AbbreviationStyle.values()) {
+        for (NullStyle nullStyle : NullStyle.values()) {
+          for (boolean handle : handleTerminalFormats) {
+            int index = sharedIndex(horAlign, abbStyle, nullStyle, handle);
+            SHARED[index] = new CellStyle(horAlign, abbStyle, nullStyle,
+                handle);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Shared default style: <b>HorizontalAlign.left</b>,
+   * <b>AbbreviationStyle.dots</b>, <b>NullStyle.emptyString</b> and terminal
+   * formats handled. Used for the cells added without a style.
+   */
+  public static final CellStyle DEFAULT = valueOf(DEFAULT_HORIZONTAL_ALIGN,
+      DEFAULT_ABBREVIATION_STYLE, DEFAULT_NULL_STYLE,
+      DEFAULT_HANDLE_TERMINAL_FORMATS);
+
+  private final HorizontalAlign horAlign;
 
-  private AbbreviationStyle abbStyle;
+  private final AbbreviationStyle abbStyle;
 
-  private NullStyle nullStyle;
+  private final NullStyle nullStyle;
 
-  private boolean handleTerminalFormats;
+  private final boolean handleTerminalFormats;
+
+  private final DisplayWidth displayWidth;
 
   /**
    * <p>
@@ -99,8 +145,9 @@ public class CellStyle {
    */
 
   public CellStyle() {
-    initialize(DEFAULT_HORIZONTAL_ALIGN, DEFAULT_ABBREVIATION_STYLE,
-        DEFAULT_NULL_STYLE, DEFAULT_HANDLE_TERMINAL_FORMATS);
+    this(DEFAULT_HORIZONTAL_ALIGN, DEFAULT_ABBREVIATION_STYLE,
+        DEFAULT_NULL_STYLE, DEFAULT_HANDLE_TERMINAL_FORMATS,
+        DEFAULT_DISPLAY_WIDTH);
   }
 
   /**
@@ -111,8 +158,9 @@ public class CellStyle {
    */
 
   public CellStyle(final HorizontalAlign horAlign) {
-    initialize(horAlign, DEFAULT_ABBREVIATION_STYLE, DEFAULT_NULL_STYLE,
-        DEFAULT_HANDLE_TERMINAL_FORMATS);
+    this(horAlign, DEFAULT_ABBREVIATION_STYLE, DEFAULT_NULL_STYLE,
+        DEFAULT_HANDLE_TERMINAL_FORMATS,
+        DEFAULT_DISPLAY_WIDTH);
   }
 
   /**
@@ -123,8 +171,9 @@ public class CellStyle {
    */
   public CellStyle(final HorizontalAlign horAlign,
       final AbbreviationStyle abbStyle) {
-    initialize(horAlign, abbStyle, DEFAULT_NULL_STYLE,
-        DEFAULT_HANDLE_TERMINAL_FORMATS);
+    this(horAlign, abbStyle, DEFAULT_NULL_STYLE,
+        DEFAULT_HANDLE_TERMINAL_FORMATS,
+        DEFAULT_DISPLAY_WIDTH);
   }
 
   /**
@@ -141,7 +190,8 @@ public class CellStyle {
 
   public CellStyle(final HorizontalAlign horAlign,
       final AbbreviationStyle abbStyle, final NullStyle nullStyle) {
-    initialize(horAlign, abbStyle, nullStyle, DEFAULT_HANDLE_TERMINAL_FORMATS);
+    this(horAlign, abbStyle, nullStyle, DEFAULT_HANDLE_TERMINAL_FORMATS,
+        DEFAULT_DISPLAY_WIDTH);
   }
 
   /**
@@ -163,16 +213,109 @@ public class CellStyle {
   public CellStyle(final HorizontalAlign horAlign,
       final AbbreviationStyle abbStyle, final NullStyle nullStyle,
       final boolean handleTerminalFormats) {
-    initialize(horAlign, abbStyle, nullStyle, handleTerminalFormats);
+    this(horAlign, abbStyle, nullStyle, handleTerminalFormats,
+        DEFAULT_DISPLAY_WIDTH);
   }
 
-  private void initialize(final HorizontalAlign horAlign,
+  /**
+   * Full constructor that also specifies how the display width of the text is
+   * measured.
+   * 
+   * @param horAlign
+   *          Horizontal alignment.
+   * @param abbStyle
+   *          Abbreviation style.
+   * @param nullStyle
+   *          Null style.
+   * @param handleTerminalFormats
+   *          Specifies if terminal format characters should be handled.
+   * @param displayWidth
+   *          Measures how many columns each character occupies.
+   *          <code>DisplayWidth.UNICODE</code> by default.
+   */
+
+  public CellStyle(final HorizontalAlign horAlign,
       final AbbreviationStyle abbStyle, final NullStyle nullStyle,
-      final boolean handleTerminalFormats) {
+      final boolean handleTerminalFormats, final DisplayWidth displayWidth) {
     this.horAlign = horAlign;
     this.abbStyle = abbStyle;
     this.nullStyle = nullStyle;
     this.handleTerminalFormats = handleTerminalFormats;
+    this.displayWidth = displayWidth != null ? displayWidth
+        : DEFAULT_DISPLAY_WIDTH;
+  }
+
+  /**
+   * Returns the shared style with the specified characteristics and the
+   * default display width. Styles are immutable, so the same instance can be
+   * used for any number of cells and tables.
+   * 
+   * @param horAlign
+   *          Horizontal alignment.
+   * @param abbStyle
+   *          Abbreviation style.
+   * @param nullStyle
+   *          Null style.
+   * @param handleTerminalFormats
+   *          Specifies if terminal format characters should be handled.
+   * @return the shared style.
+   */
+  public static CellStyle valueOf(final HorizontalAlign horAlign,
+      final AbbreviationStyle abbStyle, final NullStyle nullStyle,
+      final boolean handleTerminalFormats) {
+    if (horAlign == null || abbStyle == null || nullStyle == null) {
+      return new CellStyle(horAlign, abbStyle, nullStyle,
+          handleTerminalFormats);
+    }
+    return SHARED[sharedIndex(horAlign, abbStyle, nullStyle,
+        handleTerminalFormats)];
+  }
+
+  /**
+   * Returns the shared style with the specified characteristics, with terminal
+   * formats handled and the default display width.
+   * 
+   * @param horAlign
+   *          Horizontal alignment.
+   * @param abbStyle
+   *          Abbreviation style.
+   * @param nullStyle
+   *          Null style.
+   * @return the shared style.
+   */
+  public static CellStyle valueOf(final HorizontalAlign horAlign,
+      final AbbreviationStyle abbStyle, final NullStyle nullStyle) {
+    return valueOf(horAlign, abbStyle, nullStyle,
+        DEFAULT_HANDLE_TERMINAL_FORMATS);
+  }
+
+  private static int sharedIndex(final HorizontalAlign horAlign,
+      final AbbreviationStyle abbStyle, final NullStyle nullStyle,
+      final boolean handleTerminalFormats) {
+    int index = horAlign.ordinal();
+    index = index * AbbreviationStyle.values().length + abbStyle.ordinal();
+    index = index * NullStyle.values().length + nullStyle.ordinal();
+    return index * 2 + (handleTerminalFormats ? 1 : 0);
+  }
+
+  HorizontalAlign getHorizontalAlign() {
+    return this.horAlign;
+  }
+
+  AbbreviationStyle getAbbreviationStyle() {
+    return this.abbStyle;
+  }
+
+  NullStyle getNullStyle() {
+    return this.nullStyle;
+  }
+
+  boolean isHandleTerminalFormats() {
+    return this.handleTerminalFormats;
+  }
+
+  DisplayWidth getDisplayWidth() {
+    return this.displayWidth;
   }
 
   private String renderUncroppedText(final String txt) {
@@ -187,42 +330,121 @@ public class CellStyle {
 
   /**
    * Returns the width of a rendered text, based on the cell content and style.
+   * Tables use this method to measure the cells of styles that override it.
    * 
    * @param txt
    *          Text to render.
    * @return width of a rendered text, based on the cell style.
    */
   public int getWidth(final String txt) {
-    String content;
-    if (this.handleTerminalFormats && txt != null) {
-      content = removeTerminalFormats(txt);
-    } else {
-      content = txt;
+    return TerminalText.getWidth(measureText(txt));
+  }
+
+  /**
+   * Measures the rendered text, in a single pass. See
+   * <code>TerminalText.measure()</code>. Subclasses are measured with
+   * <code>getWidth()</code>, so their overrides are honored.
+   */
+  long measure(final String txt) {
+    long metrics = measureText(txt);
+    if (getClass() == CellStyle.class) {
+      return metrics;
     }
-    return renderUncroppedText(content).length();
+    return TerminalText.pack(0, getWidth(txt), TerminalText
+        .isFormatted(metrics));
   }
 
-  private String removeTerminalFormats(final String txt) {
-    StringBuffer sb = new StringBuffer();
-    int i = 0;
-    while (i < txt.length()) {
-      int esc = txt.indexOf(ESC, i);
-      if (esc == -1) {
-        sb.append(txt.substring(i));
-        return sb.toString();
-      }
-      int m = txt.indexOf('m', esc);
-      if (m == -1) {
-        return sb.toString();
+  private long measureText(final String txt) {
+    String plainText = renderUncroppedText(txt);
+    if (this.abbStyle == AbbreviationStyle.wrap) {
+      return measureLines(plainText);
+    }
+    return TerminalText.measure(plainText, this.handleTerminalFormats,
+        this.displayWidth);
+  }
+
+  /**
+   * Measures the widest line of a text.
+   */
+  private long measureLines(final String txt) {
+    int widest = 0;
+    boolean formatted = false;
+    int from = 0;
+    int len = txt.length();
+    while (from <= len) {
+      int to = txt.indexOf('\n', from);
+      if (to == -1) {
+        to = len;
       }
-      sb.append(txt.substring(i, esc));
-      i = m + 1;
+      long metrics = TerminalText.measure(txt, from, trimLineBreak(txt, from,
+          to), this.handleTerminalFormats, this.displayWidth);
+      widest = Math.max(widest, TerminalText.getWidth(metrics));
+      formatted = formatted || TerminalText.isFormatted(metrics);
+      from = to + 1;
+    }
+    return TerminalText.pack(0, widest, formatted);
+  }
+
+  /**
+   * Returns the end of a line without its carriage return, if any.
+   */
+  static int trimLineBreak(final String txt, final int from, final int to) {
+    if (to > from && txt.charAt(to - 1) == '\r') {
+      return to - 1;
+    }
+    return to;
+  }
+
+  /**
+   * Returns the text rendered for a content, before aligning or abbreviating
+   * it.
+   */
+  String getRenderedText(final String txt) {
+    return renderUncroppedText(txt);
+  }
+
+  /**
+   * Tells if a cell needs several lines: its style wraps, and its text is
+   * wider than the cell or has line breaks.
+   */
+  boolean isWrapped(final String txt, final int width, final int textWidth) {
+    return this.abbStyle == AbbreviationStyle.wrap
+        && (textWidth > width || txt != null && txt.indexOf('\n') != -1);
+  }
+
+  /**
+   * Appends a part of the text, that fits in the width, as one line of a
+   * wrapped cell: aligned and padded to the width.
+   */
+  void renderLine(final StringBuilder sb, final String txt, final int from,
+      final int to, final int width) {
+    long metrics = TerminalText.measure(txt, from, to,
+        this.handleTerminalFormats, this.displayWidth);
+    int diff = width - TerminalText.getWidth(metrics);
+    int diffLeft;
+    switch (this.horAlign) {
+    case left:
+      diffLeft = 0;
+      break;
+    case center:
+      diffLeft = diff / 2;
+      break;
+    default:
+      diffLeft = diff;
+    }
+    Filler.appendFiller(sb, diffLeft);
+    sb.append(txt, from, to);
+    Filler.appendFiller(sb, diff - diffLeft);
+    if (this.handleTerminalFormats && TerminalText.isFormatted(metrics)) {
+      sb.append(FORMAT_RESET_SEQUENCE);
     }
-    return sb.toString();
   }
 
   /**
    * Renders a text based on the cell content, style and specified width.
+   * Tables use this method to render the cells of styles that override it,
+   * except the cells wrapped with <code>AbbreviationStyle.wrap</code>, that
+   * are rendered line by line.
    * 
    * @param txt
    *          Text to render.
@@ -231,109 +453,138 @@ public class CellStyle {
    * @return Rendered text based on the cell style and the specified width.
    */
   public String render(final String txt, final int width) {
-    String plainText = renderUncroppedText(txt);
+    StringBuilder sb = new StringBuilder();
+    long metrics = measureText(txt);
+    int textWidth = getClass() == CellStyle.class ? TerminalText
+        .getWidth(metrics) : getWidth(txt);
+    renderText(sb, txt, width, textWidth, TerminalText.isFormatted(metrics));
+    return sb.toString();
+  }
 
-    String uc = renderUnclosedContent(txt, width, plainText);
-    if (this.handleTerminalFormats && (uc.indexOf("[") != -1)) {
-      return uc + FORMAT_RESET_SEQUENCE;
+  /**
+   * Appends the rendered text to a buffer, without allocating intermediate
+   * strings.
+   * 
+   * @param textWidth
+   *          Visible width of the text, as measured by <code>measure()</code>,
+   *          so it's not measured again.
+   * @param formatted
+   *          If the text has terminal formats, as found by
+   *          <code>measure()</code>.
+   */
+  void render(final StringBuilder sb, final String txt, final int width,
+      final int textWidth, final boolean formatted) {
+    if (getClass() == CellStyle.class) {
+      renderText(sb, txt, width, textWidth, formatted);
+    } else {
+      sb.append(render(txt, width));
+    }
+  }
+
+  private void renderText(final StringBuilder sb, final String txt,
+      final int width, final int textWidth, final boolean formatted) {
+    String plainText = renderUncroppedText(txt);
+    boolean renderedFormats = renderUnclosedContent(sb, plainText, width,
+        textWidth, formatted);
+    if (this.handleTerminalFormats && renderedFormats) {
+      sb.append(FORMAT_RESET_SEQUENCE);
     }
-    return uc;
   }
 
-  private String renderUnclosedContent(final String txt, final int width,
-      final String plainText) {
+  /**
+   * Returns true if the rendered part of the text has terminal formats.
+   */
+  private boolean renderUnclosedContent(final StringBuilder sb,
+      final String plainText, final int width, final int tWidth,
+      final boolean formatted) {
 
     // Text too short.
 
-    int tWidth = getWidth(txt);
     if (tWidth < width) {
       switch (this.horAlign) {
       case left:
-        return alignLeft(plainText, width);
+        alignLeft(sb, plainText, width - tWidth);
+        break;
       case center:
-        return alignCenter(plainText, width);
+        alignCenter(sb, plainText, width - tWidth);
+        break;
       default:
-        return alignRight(plainText, width);
+        alignRight(sb, plainText, width - tWidth);
       }
+      return formatted;
     }
 
     // Text that fits perfect.
 
     if (tWidth == width) {
-      return plainText;
+      sb.append(plainText);
+      return formatted;
     }
 
     // Text too long.
 
     switch (this.abbStyle) {
     case crop:
-      return abbreviateCrop(plainText, width);
+      return abbreviateCrop(sb, plainText, width);
     default:
-      return abbreviateDots(plainText, width);
+      return abbreviateDots(sb, plainText, width);
     }
   }
 
-  private String alignLeft(final String txt, final int width) {
-    int diff = width - getWidth(txt);
-    return txt + Filler.getFiller(diff);
+  private void alignLeft(final StringBuilder sb, final String txt,
+      final int diff) {
+    sb.append(txt);
+    Filler.appendFiller(sb, diff);
   }
 
-  private String alignCenter(final String txt, final int width) {
-    int diff = width - getWidth(txt);
+  private void alignCenter(final StringBuilder sb, final String txt,
+      final int diff) {
     int diffLeft = diff / 2;
     int diffRight = diff - diffLeft;
-    return Filler.getFiller(diffLeft) + txt + Filler.getFiller(diffRight);
+    Filler.appendFiller(sb, diffLeft);
+    sb.append(txt);
+    Filler.appendFiller(sb, diffRight);
   }
 
-  private String alignRight(final String txt, final int width) {
-    int diff = width - getWidth(txt);
-    return Filler.getFiller(diff) + txt;
+  private void alignRight(final StringBuilder sb, final String txt,
+      final int diff) {
+    Filler.appendFiller(sb, diff);
+    sb.append(txt);
   }
 
-  private static final char ESC = 27;
-  private static final String FORMAT_RESET_SEQUENCE = ESC + "[0m";
+  private static final String FORMAT_RESET_SEQUENCE = TerminalText.ESC + "[0m";
 
-  private String abbreviateCrop(final String txt, final int width) {
-    int len = getLength(txt, width);
-    // System.out.println(txt + " [" + width + "] -> " + txt.substring(0, i)
-    // + " (" + i + ")");
-    return txt.substring(0, len);
-  }
+  private boolean abbreviateCrop(final StringBuilder sb, final String txt,
+      final int width) {
+    long crop = TerminalText.crop(txt, width, this.displayWidth);
+    sb.append(txt, 0, TerminalText.getLength(crop));
 
-  private int getLength(final String txt, final int width) {
-    int added = 0;
-    int i = 0;
-    while (i < txt.length() && added <= width) {
-      char c = txt.charAt(i);
-      if (c == ESC) {
-        int m = txt.indexOf('m', i);
-        if (m == -1) {
-          i = txt.length();
-        } else {
-          i = m + 1;
-        }
-      } else if (added < width) {
-        i++;
-        added++;
-      } else {
-        return i;
-      }
-    }
-    return i;
+    // A wide character that does not fit leaves a gap.
+
+    Filler.appendFiller(sb, width - TerminalText.getWidth(crop));
+    return TerminalText.isFormatted(crop);
   }
 
-  private String abbreviateDots(final String txt, final int width) {
+  private boolean abbreviateDots(final StringBuilder sb, final String txt,
+      final int width) {
     if (width < 1) {
-      return "";
+      return false;
     }
     if (width <= DOTS_TEXT.length()) {
-      return DOTS_TEXT.substring(0, width);
+      sb.append(DOTS_TEXT, 0, width);
+      return false;
     }
-    return abbreviateCrop(txt, width - DOTS_TEXT.length()) + DOTS_TEXT;
+    boolean formatted = abbreviateCrop(sb, txt, width - DOTS_TEXT.length());
+    sb.append(DOTS_TEXT);
+    return formatted;
   }
 
   static String renderNullCell(final int width) {
     return Filler.getFiller(width);
   }
 
+  static void renderNullCell(final StringBuilder sb, final int width) {
+    Filler.appendFiller(sb, width);
+  }
+
 }
@@ -1,80 +1,77 @@
 package org.nocrala.tools.texttablefmt;
 
-import java.util.ArrayList;
-import java.util.List;
+class Column {
 
-import org.nocrala.tools.utils.Log;
+  private int minWidth;
 
-class Column {
+  private int maxWidth;
+
+  private int width;
 
-  private int colIndex;
+  // Style of the cells added without one.
 
-  private List<Cell> cells;
+  private CellStyle style;
 
-  private int minWidth;
+  // Columns with lower priority are shrunk first to fit a maximum width.
 
-  private int maxWidth;
+  private int priority;
 
-  private boolean widthAlreadyCalculated;
+  // Share of the extra width of spanning cells.
 
-  private int width;
+  private int weight;
 
-  Column(final int colIndex, final int minWidth, final int maxWidth) {
-    this.colIndex = colIndex;
+  Column(final int minWidth, final int maxWidth) {
     this.minWidth = minWidth;
     this.maxWidth = maxWidth;
-    this.cells = new ArrayList<Cell>();
-    this.widthAlreadyCalculated = false;
     this.width = 0;
+    this.style = CellStyle.DEFAULT;
+    this.priority = 0;
+    this.weight = 1;
   }
 
-  Column(final int colIndex, final int width) {
-    this.colIndex = colIndex;
+  Column(final int width) {
     this.minWidth = width;
     this.maxWidth = width;
-    this.cells = new ArrayList<Cell>();
-    this.widthAlreadyCalculated = false;
     this.width = width;
-  }
-
-  void calculateWidth(final List<Column> columns, final int separatorWidth) {
-    this.width = this.minWidth;
-    for (Cell cell : this.cells) {
-      int previousWidth = 0;
-      if (cell.getColSpan() > 1) {
-        for (int pos = this.colIndex - cell.getColSpan() + 1; pos < this.colIndex; pos++) {
-          previousWidth = previousWidth + columns.get(pos).getColumnWidth()
-              + separatorWidth;
-          Log.debug("pos[" + pos + "] --> " + previousWidth);
-        }
-      }
-      int cellTightWidth = cell != null ? cell.getTightWidth(this.maxWidth) : 0;
-      int tw = cellTightWidth - previousWidth;
-      Log.debug("cellTightWidth=" + cellTightWidth + " tw=" + tw);
-      if (tw > this.width) {
-        this.width = tw;
-      }
-    }
+    this.style = CellStyle.DEFAULT;
+    this.priority = 0;
+    this.weight = 1;
   }
 
   int getColumnWidth() {
     return this.width;
   }
 
-  void add(final Cell cell) {
-    this.cells.add(cell);
+  int getMinWidth() {
+    return this.minWidth;
+  }
+
+  int getMaxWidth() {
+    return this.maxWidth;
+  }
+
+  CellStyle getStyle() {
+    return this.style;
+  }
+
+  void setStyle(final CellStyle style) {
+    this.style = style != null ? style : CellStyle.DEFAULT;
+  }
+
+  int getPriority() {
+    return this.priority;
   }
 
-  int getSize() {
-    return this.cells.size();
+  void setPriority(final int priority) {
+    this.priority = priority;
   }
 
-  Cell get(final int index) {
-    return this.cells.get(index);
+  int getWeight() {
+    return this.weight;
   }
 
-  List<Cell> getCells() {
-    return cells;
+  void setWeight(final int weight) {
+    this.weight = weight > 0 ? weight : 0;
   }
 
   void setWidthRange(final int minWidth, final int maxWidth) {
@@ -0,0 +1,473 @@
+package org.nocrala.tools.texttablefmt;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>
+ * Thread-safe front end of a <code>StreamingTable</code>, so many producer
+ * threads can add rows to the same table.
+ * </p>
+ *
+ * <p>
+ * Producers add whole rows using the <code>addRow()</code> methods, that just
+ * queue them in a lock-free queue and return. A single renderer thread, owned
+ * by this object, takes the queued rows and adds their cells to the streaming
+ * table. The rendered rows are collected in a buffer and written to the
+ * <code>Appendable</code> object of the streaming table in batches, when the
+ * buffer is full or the queue is empty. The renderer thread is started when
+ * the first row is added.
+ * </p>
+ *
+ * <p>
+ * The queue is bounded (1024 rows by default): when it's full, producers
+ * block until the renderer takes some rows, so a slow <code>Appendable</code>
+ * object doesn't make the queue grow without limit. If the rendering fails,
+ * <code>addRow()</code> throws an <code>IllegalStateException</code> from
+ * then on, with the failure as its cause, and <code>finishTable()</code>
+ * throws the failure itself.
+ * </p>
+ *
+ * <p>
+ * By default rows are rendered in the order they are queued. If the table is
+ * created as <i>ordered</i>, each row is added with a sequence number instead,
+ * starting at zero, and rows are rendered in sequence order no matter the
+ * order they arrive in: a row is held until all the previous ones have been
+ * rendered. Instead of the queue size, the capacity limits how far ahead a
+ * row can be: a producer adding a row whose sequence number is the capacity
+ * or more ahead of the next row to render blocks until it gets closer, so the
+ * rows held are bounded too.
+ * </p>
+ *
+ * <p>
+ * Once all producers are done, call <code>finishTable()</code> to render the
+ * remaining rows and finish the streaming table. The streaming table must be
+ * configured (column widths) before creating this object, and must not be
+ * used directly afterwards.
+ * </p>
+ *
+ * <p>
+ * As an example, the following code:
+ * </p>
+ *
+ * <pre class='example'>
+ *
+ * StreamingTable st = new StreamingTable(writer, 3);
+ * final ConcurrentStreamingTable t = new ConcurrentStreamingTable(st);
+ * // in each producer thread
+ * t.addRow(new String[] { &quot;abc&quot;, &quot;def&quot;, &quot;ghi&quot; });
+ * // once all producers are done
+ * t.finishTable();
+ * </pre>
+ */
+public class ConcurrentStreamingTable {
+
+  private static final int BATCH_SIZE = 64 * 1024;
+
+  private static final int DEFAULT_CAPACITY = 1024;
+
+  private StreamingTable table;
+
+  private Appendable appendable;
+
+  private StringBuilder batch;
+
+  private boolean ordered;
+
+  private ConcurrentLinkedQueue<QueuedRow> queue;
+
+  private int capacity;
+
+  // Rows in the queue of an unordered table.
+
+  private AtomicInteger queued;
+
+  // Producers waiting for a place wait on this lock.
+
+  private Object placeLock;
+
+  private volatile int waitingProducers;
+
+  private Thread renderer;
+
+  private AtomicBoolean started;
+
+  private volatile boolean rendererWaiting;
+
+  private volatile boolean finished;
+
+  private volatile boolean failed;
+
+  // Written only by the renderer thread
+
+  private volatile long nextSequence;
+
+  private TreeMap<Long, QueuedRow> earlyRows;
+
+  // Published by the volatile failed flag.
+
+  private Exception failure;
+
+  /**
+   * Creates an unordered concurrent front end of a streaming table. Rows are
+   * rendered in the order they are queued.
+   *
+   * @param table
+   *          Streaming table where the rows will be rendered.
+   */
+  public ConcurrentStreamingTable(final StreamingTable table) {
+    this(table, false);
+  }
+
+  /**
+   * Creates a concurrent front end of a streaming table.
+   *
+   * @param table
+   *          Streaming table where the rows will be rendered.
+   * @param ordered
+   *          If true, rows must be added with a sequence number, and are
+   *          rendered in sequence order. If false, rows are rendered in the
+   *          order they are queued.
+   */
+  public ConcurrentStreamingTable(final StreamingTable table,
+      final boolean ordered) {
+    this(table, ordered, DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Creates a concurrent front end of a streaming table with a specific queue
+   * capacity.
+   *
+   * @param table
+   *          Streaming table where the rows will be rendered.
+   * @param ordered
+   *          If true, rows must be added with a sequence number, and are
+   *          rendered in sequence order. If false, rows are rendered in the
+   *          order they are queued.
+   * @param capacity
+   *          Maximum rows queued before producers block, or maximum distance
+   *          between sequence numbers in an ordered table. 1024 by default.
+   */
+  public ConcurrentStreamingTable(final StreamingTable table,
+      final boolean ordered, final int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Invalid queue capacity: "
+          + capacity);
+    }
+    this.table = table;
+    this.appendable = table.getAppendable();
+    this.batch = new StringBuilder();
+    table.setAppendable(this.batch);
+    this.ordered = ordered;
+    this.queue = new ConcurrentLinkedQueue<QueuedRow>();
+    this.capacity = capacity;
+    this.queued = new AtomicInteger(0);
+    this.placeLock = new Object();
+    this.waitingProducers = 0;
+    this.rendererWaiting = false;
+    this.finished = false;
+    this.failed = false;
+    this.nextSequence = 0;
+    this.earlyRows = new TreeMap<Long, QueuedRow>();
+    this.failure = null;
+    this.renderer = new Thread(new Runnable() {
+      public void run() {
+        render();
+      }
+    }, "texttablefmt-renderer");
+    this.renderer.setDaemon(true);
+    this.started = new AtomicBoolean(false);
+  }
+
+  /**
+   * Adds a row with the default style of each column. Rows are completed with
+   * null cells like in {@link Table#addRow(String...)}. Only valid for
+   * unordered tables.
+   *
+   * @param contents
+   *          Text of each cell of the row.
+   */
+  public void addRow(final String[] contents) {
+    addRow(contents, null);
+  }
+
+  /**
+   * Adds a row with a specific cell style for all its cells. See
+   * <code>addRow(String[])</code>.
+   *
+   * @param contents
+   *          Text of each cell of the row.
+   * @param style
+   *          Cell style to use when rendering the cells of the row, or null to
+   *          use the default style of each column.
+   */
+  public void addRow(final String[] contents, final CellStyle style) {
+    if (this.ordered) {
+      throw new IllegalStateException(
+          "Rows of an ordered table must be added with a sequence number.");
+    }
+    queue(new QueuedRow(-1, contents, style));
+  }
+
+  /**
+   * Adds a row with a sequence number and the default style of each column.
+   * Only valid for ordered tables.
+   *
+   * @param sequence
+   *          Position of the row in the table. First row is 0 (zero).
+   * @param contents
+   *          Text of each cell of the row.
+   */
+  public void addRow(final long sequence, final String[] contents) {
+    addRow(sequence, contents, null);
+  }
+
+  /**
+   * Adds a row with a sequence number and a specific cell style for all its
+   * cells. Only valid for ordered tables.
+   *
+   * @param sequence
+   *          Position of the row in the table. First row is 0 (zero).
+   * @param contents
+   *          Text of each cell of the row.
+   * @param style
+   *          Cell style to use when rendering the cells of the row, or null to
+   *          use the default style of each column.
+   */
+  public void addRow(final long sequence, final String[] contents,
+      final CellStyle style) {
+    if (!this.ordered) {
+      throw new IllegalStateException(
+          "Rows of an unordered table can't have a sequence number.");
+    }
+    if (sequence < 0) {
+      throw new IllegalArgumentException("Invalid sequence number: "
+          + sequence);
+    }
+    queue(new QueuedRow(sequence, contents, style));
+  }
+
+  /**
+   * Waits for all the queued rows to be rendered, finishes the streaming table
+   * and writes any remaining characters to the Appendable object. No more rows
+   * can be added afterwards. In an ordered table, rows held because of missing
+   * sequence numbers are rendered in sequence order.
+   *
+   * @throws IOException
+   *           if it was not possible to output to the Appendable object.
+   */
+  public void finishTable() throws IOException {
+    this.finished = true;
+    startRenderer();
+    LockSupport.unpark(this.renderer);
+    try {
+      this.renderer.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException(
+          "Interrupted while waiting for the rows to be rendered.");
+    }
+    if (this.failure instanceof IOException) {
+      throw (IOException) this.failure;
+    }
+    if (this.failure != null) {
+      throw (RuntimeException) this.failure;
+    }
+  }
+
+  private void queue(final QueuedRow row) {
+    if (this.finished) {
+      throw new IllegalStateException("The table is already finished.");
+    }
+    int totalColumns = this.table.getTotalColumns();
+    if (row.contents.length > totalColumns) {
+      throw new IllegalArgumentException("A row can't have more than "
+          + totalColumns + " cells, but it has " + row.contents.length + ".");
+    }
+    checkFailure();
+    waitForPlace(row.sequence);
+    // The rendering may have failed while waiting for a place.
+    checkFailure();
+    this.queue.offer(row);
+    startRenderer();
+    if (this.rendererWaiting) {
+      LockSupport.unpark(this.renderer);
+    }
+  }
+
+  private void checkFailure() {
+    if (this.failed) {
+      throw new IllegalStateException("The table rendering failed.",
+          this.failure);
+    }
+  }
+
+  /**
+   * Blocks until there's a place for a row: a free place in the queue of an
+   * unordered table, or a sequence number close enough to the next row to
+   * render in an ordered one. Returns without a place if the rendering fails.
+   */
+  private void waitForPlace(final long sequence) {
+    if (hasPlace(sequence)) {
+      return;
+    }
+    boolean interrupted = false;
+    synchronized (this.placeLock) {
+      // Announced before checking again, so the renderer can't miss it.
+      this.waitingProducers++;
+      try {
+        while (!this.failed && !hasPlace(sequence)) {
+          try {
+            this.placeLock.wait();
+          } catch (InterruptedException e) {
+            interrupted = true;
+          }
+        }
+      } finally {
+        this.waitingProducers--;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Checks if there's a place for a row, taking it in an unordered table.
+   */
+  private boolean hasPlace(final long sequence) {
+    if (this.ordered) {
+      return sequence - this.nextSequence < this.capacity;
+    }
+    while (true) {
+      int n = this.queued.get();
+      if (n >= this.capacity) {
+        return false;
+      }
+      if (this.queued.compareAndSet(n, n + 1)) {
+        return true;
+      }
+    }
+  }
+
+  private void wakeProducers() {
+    if (this.waitingProducers > 0) {
+      synchronized (this.placeLock) {
+        this.placeLock.notifyAll();
+      }
+    }
+  }
+
+  private void startRenderer() {
+    if (this.started.compareAndSet(false, true)) {
+      this.renderer.start();
+    }
+  }
+
+  // Renderer thread
+
+  private void render() {
+    try {
+      while (true) {
+        QueuedRow row = this.queue.poll();
+        if (row != null) {
+          accept(row);
+          if (this.batch.length() >= BATCH_SIZE) {
+            flushBatch();
+          }
+        } else {
+          flushBatch();
+          if (this.finished && this.queue.isEmpty()) {
+            break;
+          }
+          // The queue is checked again after announcing the wait, so a row
+          // queued meanwhile is not missed.
+          this.rendererWaiting = true;
+          if (this.queue.isEmpty() && !this.finished) {
+            LockSupport.park(this);
+          }
+          this.rendererWaiting = false;
+        }
+      }
+      for (QueuedRow row : this.earlyRows.values()) {
+        renderRow(row);
+      }
+      this.earlyRows.clear();
+      this.table.finishTable();
+      flushBatch();
+    } catch (IOException e) {
+      fail(e);
+    } catch (RuntimeException e) {
+      fail(e);
+    }
+  }
+
+  private void fail(final Exception e) {
+    this.failure = e;
+    this.failed = true;
+    this.queue.clear();
+    // The producers waiting for a place see the failure.
+    wakeProducers();
+  }
+
+  private void accept(final QueuedRow row) throws IOException {
+    if (!this.ordered) {
+      this.queued.decrementAndGet();
+      wakeProducers();
+      renderRow(row);
+      return;
+    }
+    if (row.sequence < this.nextSequence
+        || this.earlyRows.containsKey(row.sequence)) {
+      throw new IllegalStateException("Duplicated row sequence number: "
+          + row.sequence);
+    }
+    if (row.sequence > this.nextSequence) {
+      this.earlyRows.put(row.sequence, row);
+      return;
+    }
+    renderRow(row);
+    this.nextSequence++;
+    QueuedRow next;
+    while ((next = this.earlyRows.remove(this.nextSequence)) != null) {
+      renderRow(next);
+      this.nextSequence++;
+    }
+    wakeProducers();
+  }
+
+  private void renderRow(final QueuedRow row) throws IOException {
+    this.table.addRow(row.contents, row.style);
+  }
+
+  private void flushBatch() throws IOException {
+    if (this.batch.length() > 0) {
+      this.appendable.append(this.batch);
+      this.batch.setLength(0);
+    }
+  }
+
+  private static class QueuedRow {
+
+    private long sequence;
+
+    private String[] contents;
+
+    private CellStyle style;
+
+    QueuedRow(final long sequence, final String[] contents,
+        final CellStyle style) {
+      this.sequence = sequence;
+      // Copied, since the producer may reuse the array.
+      this.contents = contents.clone();
+      this.style = style;
+    }
+
+  }
+
+}
@@ -0,0 +1,84 @@
+package org.nocrala.tools.texttablefmt;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * <p>
+ * <code>ByteSink</code> that writes the rendered text to a file, meant for
+ * very large tables.
+ * </p>
+ *
+ * <p>
+ * The bytes are written to the file through a <code>FileChannel</code> in
+ * large chunks (1MB by default), so the file system gets few, block aligned
+ * writes.
+ * </p>
+ *
+ * <p>
+ * As an example, the following code:
+ * </p>
+ *
+ * <pre class='example'>
+ *
+ * FileSink sink = new FileSink(new File(&quot;build/output.txt&quot;));
+ * StreamingTable t = new StreamingTable(sink, 3);
+ * ...
+ * t.finishTable();
+ * sink.close();
+ * </pre>
+ */
+public class FileSink extends ByteSink {
+
+  private static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
+  /**
+   * Creates a sink that writes to a file using UTF-8. The file is created, or
+   * truncated if it exists.
+   *
+   * @param file
+   *          File where to write.
+   * @throws IOException
+   *           if the file can't be opened.
+   */
+  public FileSink(final File file) throws IOException {
+    this(file, UTF_8);
+  }
+
+  /**
+   * Creates a sink that writes to a file using the specified charset. The
+   * file is created, or truncated if it exists.
+   *
+   * @param file
+   *          File where to write.
+   * @param charset
+   *          Charset used to encode the text.
+   * @throws IOException
+   *           if the file can't be opened.
+   */
+  public FileSink(final File file, final Charset charset)
+      throws IOException {
+    this(new FileOutputStream(file).getChannel(), charset, DEFAULT_CHUNK_SIZE);
+  }
+
+  /**
+   * Creates a sink that writes to a channel, starting at its current position.
+   * The channel is closed when the sink is closed.
+   *
+   * @param channel
+   *          Channel where to write.
+   * @param charset
+   *          Charset used to encode the text.
+   * @param chunkSize
+   *          Bytes written to the channel at a time. Preferably a multiple of
+   *          the file system block size. 1MB by default.
+   */
+  public FileSink(final FileChannel channel, final Charset charset,
+      final int chunkSize) {
+    super(channel, charset, chunkSize);
+  }
+
+}
@@ -0,0 +1,130 @@
+package org.nocrala.tools.texttablefmt;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Fits the calculated column widths of a table into a width budget. When the
+ * columns are too wide, the ones with the lowest priority are shrunk first,
+ * and within a priority the widest ones: they are levelled down to a common
+ * width, never below their minimum width. Only the column widths are used, so
+ * fitting a table costs O(columns log columns) no matter how many cells it
+ * has.
+ */
+class LayoutSolver {
+
+  // Narrowest width a column is shrunk to, when its minimum width is smaller.
+
+  private static final int MIN_SHRUNK_WIDTH = 1;
+
+  /**
+   * Shrinks the columns until the sum of their widths fits in the available
+   * width, if possible.
+   */
+  static void fit(final List<Column> columns, final int available) {
+    int totalColumns = columns.size();
+    long total = 0;
+    for (Column column : columns) {
+      total = total + column.getColumnWidth();
+    }
+    long excess = total - Math.max(available, 0);
+    if (excess <= 0) {
+      return;
+    }
+
+    Column[] sorted = columns.toArray(new Column[totalColumns]);
+    Arrays.sort(sorted, new Comparator<Column>() {
+      public int compare(final Column a, final Column b) {
+        return a.getPriority() < b.getPriority() ? -1 : (a.getPriority() == b
+            .getPriority() ? 0 : 1);
+      }
+    });
+
+    int from = 0;
+    while (from < totalColumns && excess > 0) {
+      int to = from + 1;
+      while (to < totalColumns
+          && sorted[to].getPriority() == sorted[from].getPriority()) {
+        to++;
+      }
+      excess = excess - shrink(sorted, from, to, excess);
+      from = to;
+    }
+  }
+
+  /**
+   * Shrinks a group of columns with the same priority by up to the specified
+   * width. Returns the width actually removed.
+   */
+  private static long shrink(final Column[] columns, final int from,
+      final int to, final long excess) {
+    int maxWidth = 0;
+    long capacity = 0;
+    for (int i = from; i < to; i++) {
+      int width = columns[i].getColumnWidth();
+      maxWidth = Math.max(maxWidth, width);
+      capacity = capacity + width - getFloor(columns[i]);
+    }
+    if (capacity <= excess) {
+      for (int i = from; i < to; i++) {
+        columns[i].setWidth(getFloor(columns[i]));
+      }
+      return capacity;
+    }
+
+    // Highest level that removes enough width.
+
+    int low = 0;
+    int high = maxWidth;
+    while (low < high) {
+      int level = low + (high - low + 1) / 2;
+      if (getReduction(columns, from, to, level) >= excess) {
+        low = level;
+      } else {
+        high = level - 1;
+      }
+    }
+    int level = low;
+
+    // The level may remove a bit too much: the extra width goes back to the
+    // first columns cut down to the level.
+
+    long extra = getReduction(columns, from, to, level) - excess;
+    for (int i = from; i < to; i++) {
+      Column column = columns[i];
+      int width = column.getColumnWidth();
+      int floor = getFloor(column);
+      if (width > level && floor <= level) {
+        if (extra > 0) {
+          column.setWidth(level + 1);
+          extra--;
+        } else {
+          column.setWidth(level);
+        }
+      } else if (width > floor && floor > level) {
+        column.setWidth(floor);
+      }
+    }
+    return excess;
+  }
+
+  private static long getReduction(final Column[] columns, final int from,
+      final int to, final int level) {
+    long reduction = 0;
+    for (int i = from; i < to; i++) {
+      int width = columns[i].getColumnWidth();
+      int target = Math.max(getFloor(columns[i]), level);
+      if (width > target) {
+        reduction = reduction + width - target;
+      }
+    }
+    return reduction;
+  }
+
+  private static int getFloor(final Column column) {
+    int floor = Math.max(column.getMinWidth(), MIN_SHRUNK_WIDTH);
+    return Math.min(floor, column.getColumnWidth());
+  }
+
+}
@@ -0,0 +1,135 @@
+package org.nocrala.tools.texttablefmt;
+
+import java.text.BreakIterator;
+
+/**
+ * <p>
+ * Renders a wrapped cell one line at a time. Lines are found lazily with a
+ * line-break iterator over the content, as they are rendered, so the content
+ * is never split and only the position of the next line is kept.
+ * </p>
+ * 
+ * <p>
+ * A line ends at a line break, or at the last word boundary that fits in the
+ * cell width; a word wider than the cell is split. Spaces at the end of a
+ * wrapped line are dropped.
+ * </p>
+ * 
+ * <p>
+ * A wrapper is reused for any number of cells.
+ * </p>
+ */
+class LineWrapper {
+
+  private BreakIterator breaks;
+
+  private CellStyle style;
+
+  private String txt;
+
+  private int width;
+
+  private int pos;
+
+  // Position of the next line break at or after pos, or the text length.
+  // Kept between lines, so a long line is scanned only once.
+
+  private int limit;
+
+  private boolean finished;
+
+  LineWrapper() {
+    this.breaks = BreakIterator.getLineInstance();
+    this.finished = true;
+  }
+
+  /**
+   * Starts wrapping a cell content.
+   */
+  void start(final String content, final CellStyle style, final int width) {
+    this.style = style;
+    this.txt = style.getRenderedText(content);
+    this.width = width;
+    this.pos = 0;
+    this.limit = -1;
+    this.finished = false;
+    this.breaks.setText(this.txt);
+  }
+
+  /**
+   * Ends wrapping, releasing the content.
+   */
+  void clear() {
+    this.style = null;
+    this.txt = null;
+    this.finished = true;
+  }
+
+  boolean hasNextLine() {
+    return !this.finished;
+  }
+
+  /**
+   * Appends the next line of the cell, aligned and padded to the cell width.
+   */
+  void renderNextLine(final StringBuilder sb) {
+    int len = this.txt.length();
+    if (this.limit < this.pos) {
+      this.limit = this.txt.indexOf('\n', this.pos);
+      if (this.limit == -1) {
+        this.limit = len;
+      }
+    }
+    int limit = this.limit;
+    int lineEnd = CellStyle.trimLineBreak(this.txt, this.pos, limit);
+    long crop = TerminalText.crop(this.txt, this.pos, lineEnd, this.width,
+        this.style.getDisplayWidth());
+    int cropEnd = this.pos + TerminalText.getLength(crop);
+
+    int end;
+    int next;
+    if (cropEnd >= lineEnd || this.width <= 0) {
+      // The rest of the line fits
+      end = cropEnd;
+      next = limit + 1;
+      this.finished = limit >= len;
+    } else {
+      // Spaces after the last fitting char can be dropped
+      int spaces = cropEnd;
+      while (spaces < lineEnd && this.txt.charAt(spaces) == ' ') {
+        spaces++;
+      }
+      if (spaces >= lineEnd) {
+        end = cropEnd;
+        next = limit + 1;
+        this.finished = limit >= len;
+      } else {
+        int boundary = this.breaks.isBoundary(spaces) ? spaces : this.breaks
+            .preceding(spaces);
+        if (boundary > this.pos) {
+          end = trimSpaces(boundary);
+          next = boundary;
+        } else if (cropEnd > this.pos) {
+          // A word wider than the cell
+          end = cropEnd;
+          next = cropEnd;
+        } else {
+          // A character wider than the cell
+          end = this.pos;
+          next = this.pos + Character.charCount(this.txt.codePointAt(this.pos));
+        }
+      }
+    }
+    this.style.renderLine(sb, this.txt, this.pos, end, this.width);
+    this.pos = next;
+  }
+
+  private int trimSpaces(final int end) {
+    int e = end;
+    while (e > this.pos && this.txt.charAt(e - 1) == ' ') {
+      e--;
+    }
+    return e;
+  }
+
+}
@@ -0,0 +1,170 @@
+package org.nocrala.tools.texttablefmt;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>
+ * <code>RenderListener</code> that keeps the rendering metrics in memory: the
+ * totals, and histograms of the time spent per row and per column width
+ * calculation. It's thread-safe.
+ * </p>
+ * 
+ * <p>
+ * Histograms have one bucket per power of two nanoseconds: bucket
+ * <code>i</code> counts the times between 2<sup>i-1</sup> (inclusive) and
+ * 2<sup>i</sup> (exclusive) nanoseconds; bucket 0 counts the zero times.
+ * </p>
+ */
+public class RenderHistogram implements RenderListener {
+
+  private static final int BUCKETS = 64;
+
+  private AtomicLong rows = new AtomicLong();
+
+  private AtomicLong cells = new AtomicLong();
+
+  private AtomicLong abbreviatedCells = new AtomicLong();
+
+  private AtomicLong formattedCells = new AtomicLong();
+
+  private AtomicLong chars = new AtomicLong();
+
+  private AtomicLong renderNanos = new AtomicLong();
+
+  private AtomicLong layouts = new AtomicLong();
+
+  private AtomicLong layoutNanos = new AtomicLong();
+
+  private AtomicLongArray rowTimes = new AtomicLongArray(BUCKETS);
+
+  private AtomicLongArray layoutTimes = new AtomicLongArray(BUCKETS);
+
+  public void layoutCalculated(final long nanos) {
+    this.layouts.incrementAndGet();
+    this.layoutNanos.addAndGet(nanos);
+    this.layoutTimes.incrementAndGet(bucket(nanos));
+  }
+
+  public void rowRendered(final int cells, final int abbreviatedCells,
+      final int formattedCells, final long chars, final long nanos) {
+    this.rows.incrementAndGet();
+    this.cells.addAndGet(cells);
+    this.abbreviatedCells.addAndGet(abbreviatedCells);
+    this.formattedCells.addAndGet(formattedCells);
+    this.chars.addAndGet(chars);
+    this.renderNanos.addAndGet(nanos);
+    this.rowTimes.incrementAndGet(bucket(nanos));
+  }
+
+  private static int bucket(final long nanos) {
+    return nanos <= 0 ? 0 : BUCKETS - Long.numberOfLeadingZeros(nanos);
+  }
+
+  public long getRows() {
+    return this.rows.get();
+  }
+
+  public long getCells() {
+    return this.cells.get();
+  }
+
+  public long getAbbreviatedCells() {
+    return this.abbreviatedCells.get();
+  }
+
+  public long getFormattedCells() {
+    return this.formattedCells.get();
+  }
+
+  public long getChars() {
+    return this.chars.get();
+  }
+
+  public long getRenderNanos() {
+    return this.renderNanos.get();
+  }
+
+  public long getLayouts() {
+    return this.layouts.get();
+  }
+
+  public long getLayoutNanos() {
+    return this.layoutNanos.get();
+  }
+
+  /**
+   * Returns the histogram of the time spent rendering each row.
+   * 
+   * @return rows counted in each bucket.
+   */
+  public long[] getRowTimeHistogram() {
+    return toArray(this.rowTimes);
+  }
+
+  /**
+   * Returns the histogram of the time spent calculating the column widths.
+   * 
+   * @return calculations counted in each bucket.
+   */
+  public long[] getLayoutTimeHistogram() {
+    return toArray(this.layoutTimes);
+  }
+
+  /**
+   * Returns an upper bound of the time spent rendering a row, for the
+   * specified fraction of the rows. For example, 0.99 gives a value that 99%
+   * of the rows took less than.
+   * 
+   * @param fraction
+   *          Fraction of the rows, between 0 and 1.
+   * @return upper bound of the time, in nanoseconds, or 0 if no rows were
+   *         rendered.
+   */
+  public long getRowTimePercentile(final double fraction) {
+    long[] histogram = getRowTimeHistogram();
+    long total = 0;
+    for (long count : histogram) {
+      total = total + count;
+    }
+    if (total == 0) {
+      return 0;
+    }
+    long target = (long) Math.ceil(total * fraction);
+    long seen = 0;
+    for (int i = 0; i < histogram.length; i++) {
+      seen = seen + histogram[i];
+      if (seen >= target && histogram[i] > 0 || seen == total) {
+        return i == 0 ? 1 : (i >= BUCKETS - 1 ? Long.MAX_VALUE : 1L << i);
+      }
+    }
+    return Long.MAX_VALUE;
+  }
+
+  /**
+   * Clears all the metrics.
+   */
+  public void reset() {
+    this.rows.set(0);
+    this.cells.set(0);
+    this.abbreviatedCells.set(0);
+    this.formattedCells.set(0);
+    this.chars.set(0);
+    this.renderNanos.set(0);
+    this.layouts.set(0);
+    this.layoutNanos.set(0);
+    for (int i = 0; i < BUCKETS; i++) {
+      this.rowTimes.set(i, 0);
+      this.layoutTimes.set(i, 0);
+    }
+  }
+
+  private static long[] toArray(final AtomicLongArray buckets) {
+    long[] values = new long[buckets.length()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = buckets.get(i);
+    }
+    return values;
+  }
+
+}
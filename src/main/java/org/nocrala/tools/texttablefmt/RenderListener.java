@@ -0,0 +1,52 @@
+package org.nocrala.tools.texttablefmt;
+
+/**
+ * <p>
+ * Receives metrics about the rendering of a table: the time spent calculating
+ * the column widths, and for each rendered row its cells, the characters
+ * written and the time spent.
+ * </p>
+ * 
+ * <p>
+ * A listener is set using the <code>setRenderListener()</code> method of the
+ * tables. There is none by default, and then no metrics are collected at all.
+ * Listeners are called from the rendering thread, and must be thread-safe if
+ * a <code>Table</code> is rendered in parallel or a
+ * <code>ConcurrentStreamingTable</code> is used.
+ * </p>
+ * 
+ * <p>
+ * <code>RenderHistogram</code> is an implementation that keeps the metrics in
+ * memory.
+ * </p>
+ */
+public interface RenderListener {
+
+  /**
+   * Called after the column widths are calculated. Tables with fixed column
+   * widths, like <code>StreamingTable</code>, don't call it.
+   * 
+   * @param nanos
+   *          Time spent, in nanoseconds.
+   */
+  void layoutCalculated(long nanos);
+
+  /**
+   * Called after a row is rendered.
+   * 
+   * @param cells
+   *          Cells of the row.
+   * @param abbreviatedCells
+   *          Cells whose text was too wide for them, and was abbreviated.
+   * @param formattedCells
+   *          Cells with terminal format sequences (like ESCAPE[33m).
+   * @param chars
+   *          Characters written for the row: its content line, separators and
+   *          line breaks, after XML escaping.
+   * @param nanos
+   *          Time spent, in nanoseconds.
+   */
+  void rowRendered(int cells, int abbreviatedCells, int formattedCells,
+      long chars, long nanos);
+
+}
@@ -1,54 +1,116 @@
 package org.nocrala.tools.texttablefmt;
 
-import java.util.ArrayList;
-import java.util.List;
-
-import org.nocrala.tools.utils.Log;
+import java.util.BitSet;
 
+/**
+ * A row of cells, as a range of positions of a <code>CellStore</code>. A row
+ * created on its own owns its store; the rows of a <code>Table</code> are
+ * views of the table store.
+ */
 class Row {
 
-  private List<Cell> cells;
+  private static final BitSet NO_SPANNED_POSITIONS = new BitSet();
+
+  private CellStore cells;
+
+  private int first;
+
+  private int size;
+
+  // Positions covered by a colspan, that is, without a separator on their
+  // left. Calculated once, when first needed after the last added cell.
+
+  private BitSet spannedPositions;
 
   Row() {
-    this.cells = new ArrayList<Cell>();
+    this(new CellStore(), 0, 0);
+  }
+
+  Row(final CellStore cells, final int first, final int size) {
+    this.cells = cells;
+    this.first = first;
+    this.size = size;
   }
 
   public void addCell(final String content, final CellStyle style,
       final int colSpan) {
-    this.cells.add(new Cell(content, style, colSpan));
+    this.cells.add(content, style, colSpan);
+    this.size++;
+    this.spannedPositions = null;
+  }
+
+  void addCell(final String content, final CellStyle style,
+      final int colSpan, final int width, final boolean formatted) {
+    this.cells.add(content, style, colSpan, width, formatted);
+    this.size++;
+    this.spannedPositions = null;
+  }
+
+  /**
+   * Removes all the cells, to reuse the row. Only for rows that own their
+   * store.
+   */
+  void clear() {
+    this.cells.clear();
+    this.size = 0;
+    this.spannedPositions = null;
   }
 
   public boolean hasSeparator(final int pos) {
-    Log.debug("----> pos=" + pos);
-    if (pos == 0) {
-      return true;
-    }
-    int i = 0;
-    for (Cell cell : this.cells) {
-      Log.debug("i=" + i);
-      if (i < pos) {
-        if (i + cell.getColSpan() > pos) {
-          Log.debug("TRUE");
-          return false;
+    return !getSpannedPositions().get(pos);
+  }
+
+  /**
+   * Returns the positions without a separator on their left, because a
+   * colspan covers them. A row without colspans returns an empty set. The
+   * returned set must not be modified.
+   */
+  BitSet getSpannedPositions() {
+    if (this.spannedPositions == null) {
+      BitSet spanned = null;
+      int i = 0;
+      for (int c = 0; c < this.size; c++) {
+        int colSpan = getColSpan(c);
+        if (colSpan > 1) {
+          if (spanned == null) {
+            spanned = new BitSet();
+          }
+          spanned.set(i + 1, i + colSpan);
         }
-      } else {
-        return true;
+        i = i + colSpan;
       }
-      i = i + cell.getColSpan();
+      this.spannedPositions = spanned != null ? spanned
+          : NO_SPANNED_POSITIONS;
     }
-    return true;
+    return this.spannedPositions;
   }
 
   int getSize() {
-    return this.cells.size();
+    return this.size;
+  }
+
+  String getContent(final int index) {
+    return this.cells.getContent(this.first + index);
+  }
+
+  CellStyle getStyle(final int index) {
+    return this.cells.getStyle(this.first + index);
+  }
+
+  int getColSpan(final int index) {
+    return this.cells.getColSpan(this.first + index);
+  }
+
+  int getWidth(final int index) {
+    return this.cells.getWidth(this.first + index);
   }
 
-  Cell get(final int index) {
-    return this.cells.get(index);
+  boolean isFormatted(final int index) {
+    return this.cells.isFormatted(this.first + index);
   }
 
-  List<Cell> getCells() {
-    return this.cells;
+  void render(final int index, final StringBuilder sb, final int width) {
+    this.cells.render(this.first + index, sb, width);
   }
 
 }
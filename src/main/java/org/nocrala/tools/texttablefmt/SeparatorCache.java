@@ -0,0 +1,155 @@
+package org.nocrala.tools.texttablefmt;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the rendered horizontal separators of a table, so they are rendered
+ * once and reused by all the rows with the same colspans. A separator only
+ * depends on the column widths and on the colspans of the rows above and
+ * below it, so the cache must be cleared when the column widths change.
+ */
+class SeparatorCache {
+
+  private static final int MAX_ENTRIES = 256;
+
+  private static final int TOP = 0;
+
+  private static final int MIDDLE = 1;
+
+  private static final int BOTTOM = 2;
+
+  private ShownBorders shownBorders;
+
+  private BorderStyle borderStyle;
+
+  // Separators between rows without colspans.
+
+  private String topBorder;
+
+  private String middleSeparator;
+
+  private String bottomBorder;
+
+  // Separators next to rows with colspans.
+
+  private Map<Key, String> separators;
+
+  SeparatorCache(final ShownBorders shownBorders,
+      final BorderStyle borderStyle) {
+    this.shownBorders = shownBorders;
+    this.borderStyle = borderStyle;
+    this.separators = new HashMap<Key, String>();
+  }
+
+  void clear() {
+    this.topBorder = null;
+    this.middleSeparator = null;
+    this.bottomBorder = null;
+    this.separators.clear();
+  }
+
+  String getTopBorder(final List<Column> columns, final Row lowerRow) {
+    BitSet lower = lowerRow.getSpannedPositions();
+    if (lower.isEmpty()) {
+      if (this.topBorder == null) {
+        this.topBorder = this.shownBorders.renderTopBorder(columns,
+            this.borderStyle, lowerRow);
+      }
+      return this.topBorder;
+    }
+    Key key = new Key(TOP, null, lower);
+    String separator = this.separators.get(key);
+    if (separator == null) {
+      separator = this.shownBorders.renderTopBorder(columns, this.borderStyle,
+          lowerRow);
+      put(key, separator);
+    }
+    return separator;
+  }
+
+  String getMiddleSeparator(final List<Column> columns, final Row upperRow,
+      final Row lowerRow) {
+    BitSet upper = upperRow.getSpannedPositions();
+    BitSet lower = lowerRow.getSpannedPositions();
+    if (upper.isEmpty() && lower.isEmpty()) {
+      if (this.middleSeparator == null) {
+        this.middleSeparator = this.shownBorders.renderMiddleSeparator(
+            columns, this.borderStyle, upperRow, lowerRow);
+      }
+      return this.middleSeparator;
+    }
+    Key key = new Key(MIDDLE, upper, lower);
+    String separator = this.separators.get(key);
+    if (separator == null) {
+      separator = this.shownBorders.renderMiddleSeparator(columns,
+          this.borderStyle, upperRow, lowerRow);
+      put(key, separator);
+    }
+    return separator;
+  }
+
+  String getBottomBorder(final List<Column> columns, final Row upperRow) {
+    BitSet upper = upperRow.getSpannedPositions();
+    if (upper.isEmpty()) {
+      if (this.bottomBorder == null) {
+        this.bottomBorder = this.shownBorders.renderBottomBorder(columns,
+            this.borderStyle, upperRow);
+      }
+      return this.bottomBorder;
+    }
+    Key key = new Key(BOTTOM, upper, null);
+    String separator = this.separators.get(key);
+    if (separator == null) {
+      separator = this.shownBorders.renderBottomBorder(columns,
+          this.borderStyle, upperRow);
+      put(key, separator);
+    }
+    return separator;
+  }
+
+  private void put(final Key key, final String separator) {
+    if (this.separators.size() < MAX_ENTRIES) {
+      this.separators.put(key, separator);
+    }
+  }
+
+  private static class Key {
+
+    private int kind;
+
+    private BitSet upper;
+
+    private BitSet lower;
+
+    Key(final int kind, final BitSet upper, final BitSet lower) {
+      this.kind = kind;
+      this.upper = upper;
+      this.lower = lower;
+    }
+
+    public int hashCode() {
+      int h = this.kind;
+      h = 31 * h + (this.upper == null ? 0 : this.upper.hashCode());
+      h = 31 * h + (this.lower == null ? 0 : this.lower.hashCode());
+      return h;
+    }
+
+    public boolean equals(final Object obj) {
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return this.kind == other.kind && equal(this.upper, other.upper)
+          && equal(this.lower, other.lower);
+    }
+
+    private static boolean equal(final BitSet a, final BitSet b) {
+      return a == null ? b == null : a.equals(b);
+    }
+
+  }
+
+}
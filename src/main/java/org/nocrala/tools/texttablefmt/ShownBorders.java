@@ -483,7 +483,7 @@ public class ShownBorders {
       final String horizontal, final Row upperRow, final Row lowerRow,
       final String upperColSpan, final String lowerColSpan,
       final int centerWidth) {
-    StringBuffer sb = new StringBuffer();
+    StringBuilder sb = new StringBuilder();
 
     // Upper Left Corner
 
@@ -501,8 +501,10 @@ public class ShownBorders {
       boolean upperSep = upperRow != null ? upperRow.hasSeparator(j) : false;
       boolean lowerSep = lowerRow != null ? lowerRow.hasSeparator(j) : false;
 
-      Log.debug("upperSep=" + upperSep + " lowerSep=" + lowerSep
-          + " centerWidth=" + centerWidth);
+      if (Log.DEBUG_ENABLED) {
+        Log.debug("upperSep=" + upperSep + " lowerSep=" + lowerSep
+            + " centerWidth=" + centerWidth);
+      }
 
       if (j != 0) {
         if ((j > 1 && j < totalColumns - 1) && this.showCenterSeparator()
@@ -519,7 +521,9 @@ public class ShownBorders {
             if (lowerSep) {
               sb.append(lowerColSpan);
             } else {
-              Log.debug("centerWidth=" + centerWidth);
+              if (Log.DEBUG_ENABLED) {
+                Log.debug("centerWidth=" + centerWidth);
+              }
               for (int i = 0; i < centerWidth; i++) {
                 sb.append(horizontal);
               }
@@ -531,7 +535,7 @@ public class ShownBorders {
       // Cell content
 
       Column col = columns.get(j);
-      sb.append(Filler.getFiller(horizontal, col.getColumnWidth()));
+      Filler.appendFiller(sb, horizontal, col.getColumnWidth());
     }
 
     // Right border
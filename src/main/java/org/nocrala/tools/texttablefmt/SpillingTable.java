@@ -0,0 +1,602 @@
+package org.nocrala.tools.texttablefmt;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.nocrala.tools.texttablefmt.CellStyle.AbbreviationStyle;
+import org.nocrala.tools.texttablefmt.CellStyle.HorizontalAlign;
+import org.nocrala.tools.texttablefmt.CellStyle.NullStyle;
+import org.nocrala.tools.utils.Log;
+
+/**
+ * <p>
+ * Text table generator for very large tables with automatic column widths.
+ * This class will generate text tables like:
+ * </p>
+ * 
+ * <pre class='example'>
+ * 
+ *  +---------+-----------+----------+-------+
+ *  |Country  | Population|Area (km2)|Density|
+ *  +---------+-----------+----------+-------+
+ *  |Chile    | 17 000 000| 1 250 000|  13.60|
+ *  |Argentina| 50 000 000| 3 000 000|  16.67|
+ *  |Brasil   | 80 000 000| 5 000 000|  16.00|
+ *  +---------+-----------+----------+-------+
+ *  |Total    |147 000 000| 9 250 000|  15.89|
+ *  +---------+-----------+----------+-------+
+ * </pre>
+ * 
+ * <p>
+ * Like <code>Table</code>, column widths are adjusted to the wider cell in the
+ * column; like <code>StreamingTable</code>, the cells are not kept in memory.
+ * Instead, added cells are written to a temporary file while column widths are
+ * calculated. When <code>finishTable()</code> is called the temporary file is
+ * read back and rendered to the <code>Appendable</code> provided object, and
+ * then deleted.
+ * </p>
+ * 
+ * <p>
+ * Therefore the memory used does not depend on the number of rows, at the
+ * expense of writing and reading the temporary file. Nothing is written to the
+ * Appendable object until <code>finishTable()</code> is called.
+ * </p>
+ * 
+ * <p>
+ * If the table is abandoned before <code>finishTable()</code> is called,
+ * <code>close()</code> should be called to delete the temporary file. The file
+ * is also deleted if adding a cell fails.
+ * </p>
+ * 
+ * <p>
+ * Cell styles are recorded by their characteristics (alignment, abbreviation,
+ * null style, terminal formats handling and display width) in the temporary
+ * file.
+ * </p>
+ */
+public class SpillingTable implements Closeable {
+
+  private static final int DEFAULT_MIN_WIDTH = 0;
+
+  private static final int DEFAULT_MAX_WIDTH = Integer.MAX_VALUE;
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  // style code (1) + display width (1) + flags (1) + colspan (4) + cell
+  // width (4) + length (4)
+
+  private static final int CELL_HEADER_SIZE = 15;
+
+  private static final int HAS_CONTENT = 1;
+
+  private static final int FORMATTED = 2;
+
+  private static final int CHAR_SIZE = 2;
+
+  private Appendable appendable;
+
+  TableStyle tableStyle;
+
+  private List<Column> columns;
+
+  private int totalColumns;
+
+  private int currentColumn;
+
+  private boolean rowStarted;
+
+  private WidthAccumulator widths;
+
+  private List<DisplayWidth> displayWidths;
+
+  private List<CellStyle[]> styles;
+
+  File spillFile;
+
+  private RandomAccessFile spillAccess;
+
+  private FileChannel channel;
+
+  private ByteBuffer buffer;
+
+  private boolean closed;
+
+  /**
+   * Creates a spilling table that will write to an <code>Appendable</code>
+   * object using <code>BorderStyle.CLASSIC</code> and
+   * <code>ShownBorders.SURROUND_HEADER_AND_COLUMNS</code>, no XML escaping and
+   * no left margin.
+   * 
+   * @param appendable
+   *          Character stream where to write the rendered table.
+   * @param totalColumns
+   *          Total columns of this table.
+   */
+  public SpillingTable(final Appendable appendable, final int totalColumns) {
+    initialize(appendable, totalColumns);
+    this.tableStyle = new TableStyle(BorderStyle.CLASSIC,
+        ShownBorders.SURROUND_HEADER_AND_COLUMNS, false, 0, null);
+  }
+
+  /**
+   * Creates a spilling table that will write to an <code>Appendable</code>
+   * object using a specific border style, showing
+   * <code>ShownBorders.SURROUND_HEADER_AND_COLUMNS</code> separators, no XML
+   * escaping and no left margin.
+   * 
+   * @param appendable
+   *          Character stream where to write the rendered table.
+   * @param totalColumns
+   *          Total columns of this table.
+   * @param borderStyle
+   *          The border style to use when rendering the table.
+   */
+  public SpillingTable(final Appendable appendable, final int totalColumns,
+      final BorderStyle borderStyle) {
+    initialize(appendable, totalColumns);
+    this.tableStyle = new TableStyle(borderStyle,
+        ShownBorders.SURROUND_HEADER_AND_COLUMNS, false, 0, null);
+  }
+
+  /**
+   * Creates a spilling table that will write to an <code>Appendable</code>
+   * object using specific border style and shown borders, no XML escaping and
+   * no left margin.
+   * 
+   * @param appendable
+   *          Character stream where to write the rendered table.
+   * @param totalColumns
+   *          Total columns of this table.
+   * @param borderStyle
+   *          The border style to use when rendering the table.
+   * @param shownBorders
+   *          Specifies which borders will be rendered.
+   */
+  public SpillingTable(final Appendable appendable, final int totalColumns,
+      final BorderStyle borderStyle, final ShownBorders shownBorders) {
+    initialize(appendable, totalColumns);
+    this.tableStyle = new TableStyle(borderStyle, shownBorders, false, 0, null);
+  }
+
+  /**
+   * Creates a spilling table that will write to an <code>Appendable</code>
+   * object using specific border style, shown borders and XML escaping and
+   * without left margin.
+   * 
+   * @param appendable
+   *          Character stream where to write the rendered table.
+   * @param totalColumns
+   *          Total columns of this table.
+   * @param borderStyle
+   *          The border style to use when rendering the table.
+   * @param shownBorders
+   *          Specifies which borders will be rendered.
+   * @param escapeXml
+   *          Specifies if the rendered text should be escaped using XML
+   *          entities.
+   */
+  public SpillingTable(final Appendable appendable, final int totalColumns,
+      final BorderStyle borderStyle, final ShownBorders shownBorders,
+      final boolean escapeXml) {
+    initialize(appendable, totalColumns);
+    this.tableStyle = new TableStyle(borderStyle, shownBorders, escapeXml, 0,
+        null);
+  }
+
+  /**
+   * Creates a spilling table that will write to an <code>Appendable</code>
+   * object using specific border style, shown borders, XML escaping and left
+   * margin.
+   * 
+   * @param appendable
+   *          Character stream where to write the rendered table.
+   * @param totalColumns
+   *          Total columns of this table.
+   * @param borderStyle
+   *          The border style to use when rendering the table.
+   * @param shownBorders
+   *          Specifies which borders will be rendered.
+   * @param escapeXml
+   *          Specifies if the rendered text should be escaped using XML
+   *          entities.
+   * @param leftMargin
+   *          Specifies how many blank spaces will be used as a left margin for
+   *          the table.
+   */
+  public SpillingTable(final Appendable appendable, final int totalColumns,
+      final BorderStyle borderStyle, final ShownBorders shownBorders,
+      final boolean escapeXml, final int leftMargin) {
+    initialize(appendable, totalColumns);
+    this.tableStyle = new TableStyle(borderStyle, shownBorders, escapeXml,
+        leftMargin, null);
+  }
+
+  /**
+   * Creates a spilling table that will write to an <code>Appendable</code>
+   * object using specific border style, shown borders, XML escaping and left
+   * margin.
+   * 
+   * @param appendable
+   *          Character stream where to write the rendered table.
+   * @param totalColumns
+   *          Total columns of this table.
+   * @param borderStyle
+   *          The border style to use when rendering the table.
+   * @param shownBorders
+   *          Specifies which borders will be rendered.
+   * @param escapeXml
+   *          Specifies if the rendered text should be escaped using XML
+   *          entities.
+   * @param prompt
+   *          Text to use as left margin for the table.
+   */
+  public SpillingTable(final Appendable appendable, final int totalColumns,
+      final BorderStyle borderStyle, final ShownBorders shownBorders,
+      final boolean escapeXml, final String prompt) {
+    initialize(appendable, totalColumns);
+    this.tableStyle = new TableStyle(borderStyle, shownBorders, escapeXml, 0,
+        prompt);
+  }
+
+  private void initialize(final Appendable appendable, final int totalColumns) {
+    this.appendable = appendable;
+    this.totalColumns = totalColumns;
+    this.columns = new ArrayList<Column>();
+    for (int i = 0; i < totalColumns; i++) {
+      this.columns.add(new Column(DEFAULT_MIN_WIDTH, DEFAULT_MAX_WIDTH));
+    }
+    this.currentColumn = 0;
+    this.rowStarted = false;
+    this.widths = new WidthAccumulator(totalColumns);
+    this.displayWidths = new ArrayList<DisplayWidth>();
+    this.styles = new ArrayList<CellStyle[]>();
+  }
+
+  /**
+   * Sets the minimum and maximum desired column widths of a specific column. If
+   * no width range is specified for a column, its width will be adjusted to the
+   * wider cell in the column.
+   * 
+   * @param col
+   *          Column whose desired widths will be set. First column is 0
+   *          (zero).
+   * @param minWidth
+   *          Minimum desired width.
+   * @param maxWidth
+   *          Maximum desired width.
+   */
+  public void setColumnWidth(final int col, final int minWidth,
+      final int maxWidth) {
+    this.columns.get(col).setWidthRange(minWidth, maxWidth);
+  }
+
+  /**
+   * Adds a cell with the default CellStyle.
+   * 
+   * @param content
+   *          Cell text.
+   * @throws IOException
+   *           if it is not possible to write to the temporary file.
+   */
+  public void addCell(final String content) throws IOException {
+    addCell(content, CellStyle.DEFAULT);
+  }
+
+  /**
+   * Adds a cell with a colspan and the default CellStyle.
+   * 
+   * @param content
+   *          Cell text.
+   * @param colSpan
+   *          Columns this cell will span through.
+   * @throws IOException
+   *           if it is not possible to write to the temporary file.
+   */
+  public void addCell(final String content, final int colSpan)
+      throws IOException {
+    addCell(content, CellStyle.DEFAULT, colSpan);
+  }
+
+  /**
+   * Adds a cell with a specific cell style.
+   * 
+   * @param content
+   *          Cell text.
+   * @param style
+   *          Cell style to use when rendering the cell content.
+   * @throws IOException
+   *           if it is not possible to write to the temporary file.
+   */
+  public void addCell(final String content, final CellStyle style)
+      throws IOException {
+    addCell(content, style, 1);
+  }
+
+  /**
+   * Adds a cell with a specific cell style and colspan.
+   * 
+   * @param content
+   *          Cell text.
+   * @param style
+   *          Cell style to use when rendering the cell content.
+   * @param colSpan
+   *          Columns this cell will span through.
+   * @throws IOException
+   *           if it is not possible to write to the temporary file.
+   */
+  public void addCell(final String content, final CellStyle style,
+      final int colSpan) throws IOException {
+    if (this.closed) {
+      throw new IOException("The table is already closed.");
+    }
+    if (!this.rowStarted || this.currentColumn >= this.totalColumns) {
+      this.rowStarted = true;
+      this.currentColumn = 0;
+    }
+    int adjColSpan = colSpan > 0 ? colSpan : 1;
+    if (this.currentColumn + adjColSpan > this.totalColumns) {
+      adjColSpan = this.totalColumns - this.currentColumn;
+    }
+    long metrics = style.measure(content);
+    int width = TerminalText.getWidth(metrics);
+    this.widths.add(this.currentColumn, adjColSpan, width);
+    try {
+      spill(content, style, adjColSpan, width, TerminalText
+          .isFormatted(metrics));
+    } catch (IOException e) {
+      close();
+      throw e;
+    } catch (RuntimeException e) {
+      close();
+      throw e;
+    }
+    this.currentColumn = this.currentColumn + adjColSpan;
+  }
+
+  /**
+   * Calculates the column widths, renders the whole table to the Appendable
+   * object and deletes the temporary file.
+   * 
+   * @throws IOException
+   *           if it is not possible to read the temporary file or to output to
+   *           the Appendable object.
+   */
+  public void finishTable() throws IOException {
+    if (this.channel == null) {
+      this.closed = true;
+      return;
+    }
+    try {
+      flushBuffer();
+      this.widths.calculate(this.columns, this.tableStyle.borderStyle
+          .getTCCorner().length());
+      this.tableStyle.columnWidthsChanged();
+      replay();
+    } finally {
+      close();
+    }
+  }
+
+  // Pass one: spill cells
+
+  private void open() throws IOException {
+    this.spillFile = File.createTempFile("texttablefmt", ".spill");
+    this.spillAccess = new RandomAccessFile(this.spillFile, "rw");
+    this.channel = this.spillAccess.getChannel();
+    this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+  }
+
+  private void spill(final String content, final CellStyle style,
+      final int colSpan, final int width, final boolean formatted)
+      throws IOException {
+    if (this.channel == null) {
+      open();
+    }
+    if (this.buffer.remaining() < CELL_HEADER_SIZE) {
+      flushBuffer();
+    }
+    this.buffer.put((byte) encodeStyle(style));
+    this.buffer.put((byte) encodeDisplayWidth(style.getDisplayWidth()));
+    this.buffer.put((byte) ((content == null ? 0 : HAS_CONTENT) | (formatted
+        ? FORMATTED : 0)));
+    this.buffer.putInt(colSpan);
+    this.buffer.putInt(width);
+    this.buffer.putInt(content == null ? 0 : content.length());
+    if (content != null) {
+      int pos = 0;
+      while (pos < content.length()) {
+        if (this.buffer.remaining() < CHAR_SIZE) {
+          flushBuffer();
+        }
+        int end = pos
+            + Math.min(content.length() - pos, this.buffer.remaining()
+                / CHAR_SIZE);
+        for (; pos < end; pos++) {
+          this.buffer.putChar(content.charAt(pos));
+        }
+      }
+    }
+  }
+
+  private void flushBuffer() throws IOException {
+    this.buffer.flip();
+    while (this.buffer.hasRemaining()) {
+      this.channel.write(this.buffer);
+    }
+    this.buffer.clear();
+  }
+
+  // Pass two: replay and render cells
+
+  private void replay() throws IOException {
+    this.channel.position(0);
+    this.buffer.clear();
+    this.buffer.flip();
+
+    Row previousRow = null;
+    Row currentRow = null;
+    Row recycled = null;
+    int rowPos = 0;
+    int col = 0;
+    while (fill(CELL_HEADER_SIZE)) {
+      int styleCode = this.buffer.get() & 0xFF;
+      CellStyle style = decodeStyle(styleCode, this.buffer.get());
+      int flags = this.buffer.get();
+      int colSpan = this.buffer.getInt();
+      int width = this.buffer.getInt();
+      int length = this.buffer.getInt();
+      String content = (flags & HAS_CONTENT) != 0 ? readContent(length) : null;
+
+      if (currentRow == null || col >= this.totalColumns) {
+        if (currentRow != null) {
+          renderRow(currentRow, previousRow, rowPos, false);
+          rowPos++;
+          recycled = previousRow;
+          previousRow = currentRow;
+        }
+        if (recycled != null) {
+          recycled.clear();
+          currentRow = recycled;
+        } else {
+          currentRow = new Row();
+        }
+        col = 0;
+      }
+      currentRow.addCell(content, style, colSpan, width,
+          (flags & FORMATTED) != 0);
+      col = col + colSpan;
+    }
+    if (this.buffer.hasRemaining()) {
+      throw new IOException("Truncated temporary file "
+          + this.spillFile.getPath());
+    }
+    if (currentRow != null) {
+      renderRow(currentRow, previousRow, rowPos, true);
+    }
+  }
+
+  private void renderRow(final Row row, final Row previousRow,
+      final int rowPos, final boolean isLast) throws IOException {
+    boolean isFirst = rowPos == 0;
+    boolean isSecond = rowPos == 1;
+    boolean isIntermediate = rowPos > 1 && !isLast;
+    this.tableStyle.renderRow(this.appendable, row, previousRow, this.columns,
+        isFirst, isSecond, isIntermediate, isLast);
+  }
+
+  private String readContent(final int length) throws IOException {
+    char[] content = new char[length];
+    int pos = 0;
+    while (pos < length) {
+      if (!fill(CHAR_SIZE)) {
+        throw new IOException("Truncated temporary file "
+            + this.spillFile.getPath());
+      }
+      int end = pos
+          + Math.min(length - pos, this.buffer.remaining() / CHAR_SIZE);
+      for (; pos < end; pos++) {
+        content[pos] = this.buffer.getChar();
+      }
+    }
+    return new String(content);
+  }
+
+  /**
+   * Makes sure at least <code>bytes</code> bytes are available in the buffer,
+   * reading more from the file if needed.
+   */
+  private boolean fill(final int bytes) throws IOException {
+    if (this.buffer.remaining() >= bytes) {
+      return true;
+    }
+    this.buffer.compact();
+    while (this.buffer.position() < bytes) {
+      if (this.channel.read(this.buffer) == -1) {
+        break;
+      }
+    }
+    this.buffer.flip();
+    return this.buffer.remaining() >= bytes;
+  }
+
+  /**
+   * Discards the added cells and deletes the temporary file, without rendering
+   * the table. Does nothing if the table is already finished or closed.
+   */
+  public void close() {
+    this.closed = true;
+    if (this.spillAccess != null) {
+      try {
+        this.spillAccess.close();
+      } catch (IOException e) {
+        Log.error(e);
+      }
+    }
+    if (this.spillFile != null && !this.spillFile.delete()) {
+      Log.error("Could not delete temporary file " + this.spillFile.getPath());
+    }
+    this.channel = null;
+    this.spillAccess = null;
+    this.spillFile = null;
+    this.buffer = null;
+  }
+
+  // Cell style encoding
+
+  private static final int ABBREVIATION_STYLES = AbbreviationStyle.values()
+      .length;
+
+  private static final int NULL_STYLES = NullStyle.values().length;
+
+  private static final int STYLE_CODES = HorizontalAlign.values().length
+      * ABBREVIATION_STYLES * NULL_STYLES * 2;
+
+  private static int encodeStyle(final CellStyle style) {
+    int code = style.getHorizontalAlign().ordinal();
+    code = code * ABBREVIATION_STYLES + style.getAbbreviationStyle().ordinal();
+    code = code * NULL_STYLES + style.getNullStyle().ordinal();
+    code = code * 2 + (style.isHandleTerminalFormats() ? 1 : 0);
+    return code;
+  }
+
+  private int encodeDisplayWidth(final DisplayWidth displayWidth)
+      throws IOException {
+    int index = this.displayWidths.indexOf(displayWidth);
+    if (index == -1) {
+      if (this.displayWidths.size() > Byte.MAX_VALUE) {
+        throw new IOException("Too many different display widths.");
+      }
+      this.displayWidths.add(displayWidth);
+      this.styles.add(new CellStyle[STYLE_CODES]);
+      index = this.displayWidths.size() - 1;
+    }
+    return index;
+  }
+
+  private CellStyle decodeStyle(final int code, final int displayWidthIndex) {
+    CellStyle[] decoded = this.styles.get(displayWidthIndex);
+    CellStyle style = decoded[code];
+    if (style == null) {
+      int rest = code;
+      boolean handleTerminalFormats = rest % 2 != 0;
+      rest = rest / 2;
+      NullStyle nullStyle = NullStyle.values()[rest % NULL_STYLES];
+      rest = rest / NULL_STYLES;
+      AbbreviationStyle abbStyle = AbbreviationStyle.values()[rest
+          % ABBREVIATION_STYLES];
+      HorizontalAlign horAlign = HorizontalAlign.values()[rest
+          / ABBREVIATION_STYLES];
+      style = new CellStyle(horAlign, abbStyle, nullStyle,
+          handleTerminalFormats, this.displayWidths.get(displayWidthIndex));
+      decoded[code] = style;
+    }
+    return style;
+  }
+
+}
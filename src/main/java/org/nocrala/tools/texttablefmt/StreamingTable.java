@@ -44,7 +44,9 @@ import org.nocrala.tools.utils.Log;
  * <p>
  * All column widths default to 10 characters wide. Change this widths as
  * desired <b>BEFORE</b> adding any cell, using the method
- * <code>setColumnWidth()</code>.
+ * <code>setColumnWidth()</code>. Alternatively, use the method
+ * <code>setLookahead()</code> to calculate them from the first rows of the
+ * table.
  * </p>
  * 
  * <p>
@@ -115,6 +117,18 @@ public class StreamingTable {
 
   private int currentRowPos;
 
+  // Lookahead window: rows held until the column widths are calculated.
+
+  private int lookaheadRows;
+
+  private long lookaheadNanos;
+
+  private List<Row> window;
+
+  private long windowStart;
+
+  private WidthAccumulator windowWidths;
+
   /**
    * Creates a streaming table that will write to an <code>Appendable</code>
    * object using <code>BorderStyle.CLASSIC</code> and
@@ -257,11 +271,15 @@ public class StreamingTable {
     this.previousRow = null;
     this.columns = new ArrayList<Column>();
     for (int i = 0; i < totalColumns; i++) {
-      this.columns.add(new Column(i, DEFAULT_WIDTH));
+      Column column = new Column(0, Integer.MAX_VALUE);
+      column.setWidth(DEFAULT_WIDTH);
+      this.columns.add(column);
     }
     this.currentColumn = 0;
     this.currentRow = null;
     this.currentRowPos = 0;
+    this.lookaheadRows = 0;
+    this.window = null;
   }
 
   /**
@@ -273,11 +291,96 @@ public class StreamingTable {
    *          width of the column.
    */
   public void setColumnWidth(final int col, final int width) {
-    this.columns.get(col).setWidth(width < 0 ? 0 : width);
+    int w = width < 0 ? 0 : width;
+    this.columns.get(col).setWidthRange(w, w);
+    this.columns.get(col).setWidth(w);
+    this.tableStyle.columnWidthsChanged();
+  }
+
+  /**
+   * Sets the minimum and maximum widths of a specific column, used when the
+   * column widths are calculated from a lookahead window. See
+   * <code>setLookahead()</code>. Without lookahead the column width is just
+   * kept within this range.
+   * 
+   * @param col
+   *          Column whose widths will be set. First column is 0 (zero).
+   * @param minWidth
+   *          Minimum width.
+   * @param maxWidth
+   *          Maximum width.
+   */
+  public void setColumnWidth(final int col, final int minWidth,
+      final int maxWidth) {
+    Column column = this.columns.get(col);
+    column.setWidthRange(minWidth, maxWidth);
+    column.setWidth(Math.max(minWidth, Math.min(maxWidth, column
+        .getColumnWidth())));
+    this.tableStyle.columnWidthsChanged();
   }
 
   /**
-   * Adds a cell with the default CellStyle.
+   * Calculates the column widths from the first rows of the table instead of
+   * using fixed widths. The first rows are held in memory until there are
+   * <code>rows</code> of them, the specified time has passed since the first
+   * one was completed, or the table is finished. Then the column widths are
+   * calculated to fit them, the same way <code>Table</code> does and within
+   * the ranges set with <code>setColumnWidth()</code>, the held rows are
+   * rendered, and the following ones are streamed with the same widths. Wider
+   * cells in the following rows are abbreviated.
+   * 
+   * <p>
+   * Must be called before adding any cell.
+   * </p>
+   * 
+   * @param rows
+   *          Maximum rows held.
+   * @param millis
+   *          Maximum time the rows are held, in milliseconds, or 0 (zero) for
+   *          no time limit.
+   */
+  public void setLookahead(final int rows, final long millis) {
+    if (this.currentRow != null || this.currentRowPos > 0) {
+      throw new IllegalStateException(
+          "The lookahead must be set before adding any cell.");
+    }
+    if (rows <= 0) {
+      throw new IllegalArgumentException("Invalid lookahead rows: " + rows);
+    }
+    this.lookaheadRows = rows;
+    this.lookaheadNanos = millis > 0 ? millis * 1000000L : 0;
+    this.window = new ArrayList<Row>();
+    this.windowWidths = new WidthAccumulator(this.columns.size());
+  }
+
+  /**
+   * Sets a listener that will receive metrics about the rendering of this
+   * table. There is none by default.
+   * 
+   * @param listener
+   *          Listener that will receive the metrics, or null to collect none.
+   */
+  public void setRenderListener(final RenderListener listener) {
+    this.tableStyle.setRenderListener(listener);
+  }
+
+  /**
+   * Sets the default style of a column: the style of the cells added to it
+   * without a specific style. <code>CellStyle.DEFAULT</code> unless set.
+   * 
+   * @param col
+   *          Column whose default style will be set. First column is 0
+   *          (zero).
+   * @param style
+   *          Style of the cells added to the column without a style.
+   */
+  public void setColumnStyle(final int col, final CellStyle style) {
+    this.columns.get(col).setStyle(style);
+  }
+
+  /**
+   * Adds a cell with the default style of its column. See
+   * <code>setColumnStyle()</code>.
    * 
    * @param content
    *          Cell text.
@@ -285,11 +388,11 @@ public class StreamingTable {
    *           if it is not possible to output to the Appendable object.
    */
   public void addCell(final String content) throws IOException {
-    addCell(content, new CellStyle());
+    addCell(content, getNextColumn().getStyle());
   }
 
   /**
-   * Adds a cell with a colspan and the default CellStyle.
+   * Adds a cell with a colspan and the default style of its column.
    * 
    * @param content
    *          Cell text.
@@ -300,7 +403,7 @@ public class StreamingTable {
    */
   public void addCell(final String content, final int colSpan)
       throws IOException {
-    addCell(content, new CellStyle(), colSpan);
+    addCell(content, getNextColumn().getStyle(), colSpan);
   }
 
   /**
@@ -338,8 +441,7 @@ public class StreamingTable {
     }
     if (this.currentColumn >= this.columns.size()) {
       renderRow(false);
-      this.previousRow = this.currentRow;
-      this.currentRow = new Row();
+      nextRow();
       this.currentColumn = 0;
     }
     int adjColSpan = colSpan > 0 ? colSpan : 1;
@@ -347,6 +449,108 @@ public class StreamingTable {
     this.currentColumn = this.currentColumn + adjColSpan;
   }
 
+  /**
+   * Adds a row of cells with the default style of each column. Rows are
+   * completed with null cells like in {@link Table#addRow(String...)}.
+   * 
+   * @param contents
+   *          Text of each cell of the row.
+   * @throws IOException
+   *           if it is not possible to output to the Appendable object.
+   */
+  public void addRow(final String... contents) throws IOException {
+    addRow(contents, null);
+  }
+
+  /**
+   * Adds a row of cells with a specific cell style for all of them. See
+   * <code>addRow(String...)</code>.
+   * 
+   * @param contents
+   *          Text of each cell of the row.
+   * @param style
+   *          Cell style to use when rendering the cells of the row, or null to
+   *          use the default style of each column.
+   * @throws IOException
+   *           if it is not possible to output to the Appendable object.
+   */
+  public void addRow(final String[] contents, final CellStyle style)
+      throws IOException {
+    checkRowSize(contents.length);
+    addRowCells(contents, style);
+  }
+
+  /**
+   * Adds rows of cells with the default style of each column. See
+   * <code>addRow(String...)</code>.
+   * 
+   * @param rows
+   *          Text of the cells of each row.
+   * @throws IOException
+   *           if it is not possible to output to the Appendable object.
+   */
+  public void addRows(final Iterable<String[]> rows) throws IOException {
+    for (String[] contents : rows) {
+      checkRowSize(contents.length);
+      addRowCells(contents, null);
+    }
+  }
+
+  /**
+   * Adds rows of cells with the default style of each column, given by column:
+   * the text of the cell of column <code>c</code> and row <code>r</code> is
+   * <code>columns[c][r]</code>. All the columns must have the same number of
+   * rows. See <code>addRow(String...)</code>.
+   * 
+   * @param columns
+   *          Text of the cells of each column.
+   * @throws IOException
+   *           if it is not possible to output to the Appendable object.
+   */
+  public void addColumnarBatch(final String[][] columns) throws IOException {
+    checkRowSize(columns.length);
+    int batchRows = columns.length > 0 ? columns[0].length : 0;
+    for (String[] column : columns) {
+      if (column.length != batchRows) {
+        throw new IllegalArgumentException(
+            "All the columns of a batch must have the same number of rows.");
+      }
+    }
+    String[] contents = new String[columns.length];
+    for (int r = 0; r < batchRows; r++) {
+      for (int c = 0; c < columns.length; c++) {
+        contents[c] = columns[c][r];
+      }
+      addRowCells(contents, null);
+    }
+  }
+
+  private void checkRowSize(final int size) {
+    if (size > this.columns.size()) {
+      throw new IllegalArgumentException("A row can't have more than "
+          + this.columns.size() + " cells, but it has " + size + ".");
+    }
+  }
+
+  private void addRowCells(final String[] contents, final CellStyle style)
+      throws IOException {
+    int totalColumns = this.columns.size();
+    if (this.currentRow != null) {
+      while (this.currentColumn < totalColumns) {
+        addCell(null, getStyle(this.currentColumn, style));
+      }
+      renderRow(false);
+      nextRow();
+    } else {
+      this.currentRow = new Row();
+    }
+    for (int c = 0; c < totalColumns; c++) {
+      this.currentRow.addCell(c < contents.length ? contents[c] : null,
+          getStyle(c, style), 1);
+    }
+    this.currentColumn = totalColumns;
+  }
+
   /**
    * Finishes the table rendering and flushes any remaining characters to the
    * Appendable object.
@@ -359,21 +563,102 @@ public class StreamingTable {
     }
   }
 
+  private Column getNextColumn() {
+    if (this.currentRow == null || this.currentColumn >= this.columns.size()) {
+      return this.columns.get(0);
+    }
+    return this.columns.get(this.currentColumn);
+  }
+
+  private CellStyle getStyle(final int col, final CellStyle style) {
+    return style != null ? style : this.columns.get(col).getStyle();
+  }
+
+  /**
+   * Makes the current row the previous one and starts a new current row,
+   * reusing the former previous row unless it's held in the lookahead window.
+   */
+  private void nextRow() {
+    Row recycled = this.window == null ? this.previousRow : null;
+    this.previousRow = this.currentRow;
+    if (recycled != null) {
+      recycled.clear();
+      this.currentRow = recycled;
+    } else {
+      this.currentRow = new Row();
+    }
+  }
+
   private void renderRow(final boolean isLast) throws IOException {
-    Log.debug("this.currentRow.getSize()=" + this.currentRow.getSize());
+    if (this.window != null) {
+      hold(this.currentRow, isLast);
+    } else {
+      renderRow(this.currentRow, this.previousRow, isLast);
+    }
+  }
+
+  private void renderRow(final Row row, final Row previous,
+      final boolean isLast) throws IOException {
+    if (Log.DEBUG_ENABLED) {
+      Log.debug("row.getSize()=" + row.getSize());
+    }
     boolean isFirst = this.currentRowPos == 0;
     boolean isSecond = this.currentRowPos == 1;
     boolean isIntermediate = (this.currentRowPos > 1) && !isLast;
-    this.tableStyle.renderRow(this.appendable, this.currentRow,
-        this.previousRow, this.columns, isFirst, isSecond, isIntermediate,
-        isLast);
+    this.tableStyle.renderRow(this.appendable, row, previous, this.columns,
+        isFirst, isSecond, isIntermediate, isLast);
     this.currentRowPos++;
   }
 
+  /**
+   * Holds a completed row in the lookahead window, and renders the window
+   * once it's full.
+   */
+  private void hold(final Row row, final boolean isLast) throws IOException {
+    if (this.window.isEmpty()) {
+      this.windowStart = this.lookaheadNanos > 0 ? System.nanoTime() : 0;
+    }
+    this.window.add(row);
+    int col = 0;
+    for (int c = 0; c < row.getSize(); c++) {
+      int colSpan = row.getColSpan(c);
+      this.windowWidths.add(col, colSpan, row.getWidth(c));
+      col = col + colSpan;
+    }
+    if (isLast || this.window.size() >= this.lookaheadRows
+        || this.lookaheadNanos > 0
+        && System.nanoTime() - this.windowStart >= this.lookaheadNanos) {
+      renderWindow(isLast);
+    }
+  }
+
+  private void renderWindow(final boolean isLast) throws IOException {
+    List<Row> rows = this.window;
+    this.window = null;
+    this.windowWidths.calculate(this.columns, this.tableStyle.borderStyle
+        .getTCCorner().length());
+    this.windowWidths = null;
+    this.tableStyle.columnWidthsChanged();
+    Row previous = null;
+    for (int i = 0; i < rows.size(); i++) {
+      Row row = rows.get(i);
+      renderRow(row, previous, isLast && i == rows.size() - 1);
+      previous = row;
+    }
+  }
+
   int getTotalColumns() {
     return this.columns.size();
   }
 
+  Appendable getAppendable() {
+    return this.appendable;
+  }
+
+  void setAppendable(final Appendable appendable) {
+    this.appendable = appendable;
+  }
+
   Column getColumn(final int index) {
     return this.columns.get(index);
   }
@@ -1,7 +1,11 @@
 package org.nocrala.tools.texttablefmt;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import org.nocrala.tools.utils.Log;
 
@@ -34,11 +38,12 @@ import org.nocrala.tools.utils.Log;
  * </p>
  * 
  * <p>
- * The entire table is built in memory, so this class is not intended for a
- * massive numbers of rows/cells. Although the maximum size of the in-memory
- * table depends on the amount of available memory the JVM has, as a rule of
- * thumb, don't exceed 10.000 total cells. If you need to render a bigger table,
- * use the <code>StreamingTable</code> class instead.
+ * The entire table is built in memory. Cells are kept in a compact columnar
+ * store (their contents, widths, colspans and styles in arrays, with equal
+ * styles shared), so the per-cell overhead is little more than the cell text.
+ * Even so, the maximum size of the in-memory table depends on the amount of
+ * available memory the JVM has. If you need to render a bigger table, use the
+ * <code>StreamingTable</code> or <code>SpillingTable</code> classes instead.
  * </p>
  * 
  * <p>
@@ -47,6 +52,12 @@ import org.nocrala.tools.utils.Log;
  * </p>
  * 
  * <p>
+ * A table can be rendered any number of times, and more cells can be added
+ * between renderings. Column widths are kept up to date as cells are added,
+ * so rendering the table again costs little more than the output itself.
+ * </p>
+ * 
+ * <p>
  * As an example, the following code:
  * </p>
  * 
@@ -96,7 +107,13 @@ public class Table {
 
   TableStyle tableStyle;
 
-  private List<Row> rows;
+  private CellStore cells;
+
+  // Position of the first cell of each row in the store.
+
+  private int[] rowStarts;
+
+  private int totalRows;
 
   private List<Column> columns;
 
@@ -104,7 +121,15 @@ public class Table {
 
   private int currentColumn;
 
-  private Row currentRow;
+  // Widest cells seen so far. Kept up to date as cells are added, so the
+  // column widths are recalculated only when cells were added or a column
+  // width range changed since the last rendering.
+
+  private WidthAccumulator widths;
+
+  private boolean layoutChanged;
+
+  private int maxWidth;
 
   /**
    * Creates a table using <code>BorderStyle.CLASSIC</code> and
@@ -226,13 +251,17 @@ public class Table {
 
   private void initialize(final int totalColumns) {
     this.totalColumns = totalColumns;
-    this.rows = new ArrayList<Row>();
+    this.cells = new CellStore();
+    this.rowStarts = new int[16];
+    this.totalRows = 0;
     this.columns = new ArrayList<Column>();
     for (int i = 0; i < this.totalColumns; i++) {
-      this.columns.add(new Column(i, DEFAULT_MIN_WIDTH, DEFAULT_MAX_WIDTH));
+      this.columns.add(new Column(DEFAULT_MIN_WIDTH, DEFAULT_MAX_WIDTH));
     }
     this.currentColumn = 0;
-    this.currentRow = null;
+    this.widths = new WidthAccumulator(totalColumns);
+    this.layoutChanged = true;
+    this.maxWidth = 0;
   }
 
   /**
@@ -252,21 +281,97 @@ public class Table {
   public void setColumnWidth(final int col, final int minWidth,
       final int maxWidth) {
     this.columns.get(col).setWidthRange(minWidth, maxWidth);
+    this.layoutChanged = true;
+  }
+
+  /**
+   * Sets the maximum width of the rendered lines, including the left margin
+   * or prompt and the borders. If the columns don't fit, they are shrunk and
+   * their cells abbreviated: first the columns with the lowest priority, and
+   * among them the widest ones. A column is not shrunk below its minimum
+   * width, nor below one character; if the table doesn't fit even then, it's
+   * rendered wider.
+   * 
+   * @param maxWidth
+   *          Maximum width of the lines, or 0 (zero) for no limit, the
+   *          default.
+   */
+  public void setMaxWidth(final int maxWidth) {
+    this.maxWidth = maxWidth;
+    this.layoutChanged = true;
+  }
+
+  /**
+   * Sets the priority of a column when the table is shrunk to fit its maximum
+   * width: columns with lower priority are shrunk first. All columns have
+   * priority 0 (zero) unless set.
+   * 
+   * @param col
+   *          Column whose priority will be set. First column is 0 (zero).
+   * @param priority
+   *          Priority of the column.
+   */
+  public void setColumnPriority(final int col, final int priority) {
+    this.columns.get(col).setPriority(priority);
+    this.layoutChanged = true;
+  }
+
+  /**
+   * Sets the weight of a column when sharing the extra width of spanning
+   * cells. When a cell spanning several columns is wider than them, the
+   * missing width is distributed among the spanned columns in proportion to
+   * their weights. All columns have weight 1 unless set, so the width is
+   * distributed evenly; a column with weight 0 (zero) is only widened if all
+   * the spanned columns have weight 0 (zero).
+   * 
+   * @param col
+   *          Column whose weight will be set. First column is 0 (zero).
+   * @param weight
+   *          Weight of the column.
+   */
+  public void setColumnWeight(final int col, final int weight) {
+    this.columns.get(col).setWeight(weight);
+    this.layoutChanged = true;
+  }
+
+  /**
+   * Sets a listener that will receive metrics about the rendering of this
+   * table. There is none by default.
+   * 
+   * @param listener
+   *          Listener that will receive the metrics, or null to collect none.
+   */
+  public void setRenderListener(final RenderListener listener) {
+    this.tableStyle.setRenderListener(listener);
   }
 
   /**
-   * Adds a cell with the default CellStyle. See <code>CellStyle</code> for
-   * details on its default characteristics.
+   * Sets the default style of a column: the style of the cells added to it
+   * without a specific style. <code>CellStyle.DEFAULT</code> unless set.
+   * 
+   * @param col
+   *          Column whose default style will be set. First column is 0
+   *          (zero).
+   * @param style
+   *          Style of the cells added to the column without a style.
+   */
+  public void setColumnStyle(final int col, final CellStyle style) {
+    this.columns.get(col).setStyle(style);
+  }
+
+  /**
+   * Adds a cell with the default style of its column. See
+   * <code>setColumnStyle()</code>.
    * 
    * @param content
    *          Cell text.
    */
   public void addCell(final String content) {
-    addCell(content, new CellStyle());
+    addCell(content, getNextColumn().getStyle());
   }
 
   /**
-   * Adds a cell with a colspan and the default CellStyle.
+   * Adds a cell with a colspan and the default style of its column.
    * 
    * @param content
    *          Cell text.
@@ -274,7 +379,7 @@ public class Table {
    *          Columns this cell will span through.
    */
   public void addCell(final String content, final int colSpan) {
-    addCell(content, new CellStyle(), colSpan);
+    addCell(content, getNextColumn().getStyle(), colSpan);
   }
 
   /**
@@ -301,19 +406,122 @@ public class Table {
    */
   public void addCell(final String content, final CellStyle style,
       final int colSpan) {
-    if (this.currentRow == null || this.currentColumn >= this.totalColumns) {
-      this.currentRow = new Row();
-      this.rows.add(currentRow);
-      this.currentColumn = 0;
+    if (this.totalRows == 0 || this.currentColumn >= this.totalColumns) {
+      startRow();
     }
     int adjColSpan = colSpan > 0 ? colSpan : 1;
     if (this.currentColumn + adjColSpan > this.totalColumns) {
       adjColSpan = this.totalColumns - this.currentColumn;
     }
-    this.currentRow.addCell(content, style, adjColSpan);
+    int index = this.cells.add(content, style, adjColSpan);
+    this.widths.add(this.currentColumn, adjColSpan, this.cells.getWidth(index));
+    this.layoutChanged = true;
     this.currentColumn = this.currentColumn + adjColSpan;
   }
 
+  /**
+   * Adds a row of cells with the default style of each column. The row always
+   * starts on a new row: if the current row is incomplete, it's completed with
+   * null cells first. A row with fewer cells than the table columns is
+   * completed with null cells too.
+   * 
+   * @param contents
+   *          Text of each cell of the row.
+   */
+  public void addRow(final String... contents) {
+    addRow(contents, null);
+  }
+
+  /**
+   * Adds a row of cells with a specific cell style for all of them. See
+   * <code>addRow(String...)</code>.
+   * 
+   * @param contents
+   *          Text of each cell of the row.
+   * @param style
+   *          Cell style to use when rendering the cells of the row, or null to
+   *          use the default style of each column.
+   */
+  public void addRow(final String[] contents, final CellStyle style) {
+    checkRowSize(contents.length);
+    prepareRows(1, style);
+    addRowCells(contents, style);
+  }
+
+  /**
+   * Adds rows of cells with the default style of each column. See
+   * <code>addRow(String...)</code>.
+   * 
+   * @param rows
+   *          Text of the cells of each row.
+   */
+  public void addRows(final Iterable<String[]> rows) {
+    for (String[] contents : rows) {
+      checkRowSize(contents.length);
+      prepareRows(1, null);
+      addRowCells(contents, null);
+    }
+  }
+
+  /**
+   * Adds rows of cells with the default style of each column, given by column:
+   * the text of the cell of column <code>c</code> and row <code>r</code> is
+   * <code>columns[c][r]</code>. All the columns must have the same number of
+   * rows. See <code>addRow(String...)</code>.
+   * 
+   * @param columns
+   *          Text of the cells of each column.
+   */
+  public void addColumnarBatch(final String[][] columns) {
+    checkRowSize(columns.length);
+    int batchRows = columns.length > 0 ? columns[0].length : 0;
+    for (String[] column : columns) {
+      if (column.length != batchRows) {
+        throw new IllegalArgumentException(
+            "All the columns of a batch must have the same number of rows.");
+      }
+    }
+    prepareRows(batchRows, null);
+    String[] contents = new String[columns.length];
+    for (int r = 0; r < batchRows; r++) {
+      for (int c = 0; c < columns.length; c++) {
+        contents[c] = columns[c][r];
+      }
+      addRowCells(contents, null);
+    }
+  }
+
+  private void checkRowSize(final int size) {
+    if (size > this.totalColumns) {
+      throw new IllegalArgumentException("A row can't have more than "
+          + this.totalColumns + " cells, but it has " + size + ".");
+    }
+  }
+
+  /**
+   * Completes the current row, if any, and makes room for the specified number
+   * of whole rows.
+   */
+  private void prepareRows(final int rows, final CellStyle style) {
+    if (this.totalRows > 0) {
+      while (this.currentColumn < this.totalColumns) {
+        addCell(null, getStyle(this.currentColumn, style));
+      }
+    }
+    this.cells.ensureCapacity(this.cells.size() + rows * this.totalColumns);
+  }
+
+  private void addRowCells(final String[] contents, final CellStyle style) {
+    startRow();
+    for (int c = 0; c < this.totalColumns; c++) {
+      String content = c < contents.length ? contents[c] : null;
+      int index = this.cells.add(content, getStyle(c, style), 1);
+      this.widths.add(c, 1, this.cells.getWidth(index));
+    }
+    this.currentColumn = this.totalColumns;
+    this.layoutChanged = true;
+  }
+
   /**
    * Renders the table as a multi-line String.
    * 
@@ -325,6 +533,99 @@ public class Table {
     return this.tableStyle.renderTable(this);
   }
 
+  /**
+   * Renders the table into an <code>Appendable</code> object. Once the column
+   * widths are calculated each line is written as soon as it's rendered, so
+   * the whole rendered table is never held in memory.
+   * 
+   * @param appendable
+   *          Character stream where to write the rendered table.
+   * @throws IOException
+   *           if it is not possible to output to the Appendable object.
+   */
+  public void render(final Appendable appendable) throws IOException {
+    calculateColumnsWidth();
+    this.tableStyle.renderTable(this, appendable);
+  }
+
+  /**
+   * Renders some rows of the table into an <code>Appendable</code> object,
+   * exactly as they are rendered in the whole table, including the separator
+   * lines above them and the bottom border if the last row is included. Only
+   * the requested rows are rendered, using the already calculated column
+   * widths, so rendering a window of a big table, like when scrolling it,
+   * costs the same no matter its size. The first rendered line is not
+   * preceded by a line break.
+   * 
+   * @param fromRow
+   *          First row to render (inclusive). First row is 0 (zero).
+   * @param toRow
+   *          Last row to render (exclusive).
+   * @param appendable
+   *          Character stream where to write the rendered rows.
+   * @throws IOException
+   *           if it is not possible to output to the Appendable object.
+   */
+  public void render(final int fromRow, final int toRow,
+      final Appendable appendable) throws IOException {
+    if (fromRow < 0 || toRow > this.totalRows || fromRow > toRow) {
+      throw new IllegalArgumentException("Invalid row range: " + fromRow
+          + " to " + toRow + " (table has " + this.totalRows + " rows).");
+    }
+    calculateColumnsWidth();
+    this.tableStyle.renderRows(this, appendable, fromRow, toRow);
+  }
+
+  /**
+   * Renders the table into an <code>Appendable</code> object, rendering groups
+   * of rows in parallel in the specified pool. The output is the same as the
+   * one of <code>render(Appendable)</code>; it pays off for big tables on
+   * machines with several cores. No cells must be added to the table while it
+   * is being rendered.
+   * 
+   * @param appendable
+   *          Character stream where to write the rendered table.
+   * @param pool
+   *          Pool where the rows are rendered.
+   * @throws IOException
+   *           if it is not possible to output to the Appendable object.
+   */
+  public void render(final Appendable appendable, final ForkJoinPool pool)
+      throws IOException {
+    calculateColumnsWidth();
+    this.tableStyle.renderTable(this, appendable, pool);
+  }
+
+  /**
+   * Renders the table into a <code>Writer</code> and flushes it. The writer is
+   * not closed.
+   * 
+   * @param writer
+   *          Writer where to write the rendered table.
+   * @throws IOException
+   *           if it is not possible to write to the Writer object.
+   */
+  public void writeTo(final Writer writer) throws IOException {
+    render(writer);
+    writer.flush();
+  }
+
+  /**
+   * Renders the table into an <code>OutputStream</code> encoded as UTF-8, and
+   * flushes it. The stream is not closed.
+   * 
+   * @param out
+   *          Output stream where to write the rendered table, like the one of
+   *          a socket or a file.
+   * @throws IOException
+   *           if it is not possible to write to the output stream.
+   */
+  public void writeTo(final OutputStream out) throws IOException {
+    ByteSink sink = new ByteSink(out);
+    render(sink);
+    sink.flush();
+  }
+
   /**
    * Renders the table as a String array.
    * 
@@ -335,39 +636,82 @@ public class Table {
     return this.tableStyle.renderAsStringArray(this);
   }
 
+  private Column getNextColumn() {
+    if (this.totalRows == 0 || this.currentColumn >= this.totalColumns) {
+      return this.columns.get(0);
+    }
+    return this.columns.get(this.currentColumn);
+  }
+
+  private CellStyle getStyle(final int col, final CellStyle style) {
+    return style != null ? style : this.columns.get(col).getStyle();
+  }
+
+  private void startRow() {
+    if (this.totalRows == this.rowStarts.length) {
+      int[] newRowStarts = new int[this.rowStarts.length * 2];
+      System.arraycopy(this.rowStarts, 0, newRowStarts, 0, this.totalRows);
+      this.rowStarts = newRowStarts;
+    }
+    this.rowStarts[this.totalRows] = this.cells.size();
+    this.totalRows++;
+    this.currentColumn = 0;
+  }
+
   int getTotalColumns() {
     return this.totalColumns;
   }
 
   private void calculateColumnsWidth() {
+    if (!this.layoutChanged) {
+      return;
+    }
+    RenderListener listener = this.tableStyle.getRenderListener();
+    long start = listener != null ? System.nanoTime() : 0;
+    int[] previousWidths = new int[this.totalColumns];
+    for (int i = 0; i < this.totalColumns; i++) {
+      previousWidths[i] = this.columns.get(i).getColumnWidth();
+    }
+    this.widths.calculate(this.columns, this.tableStyle.borderStyle
+        .getTCCorner().length());
+    if (this.maxWidth > 0) {
+      LayoutSolver.fit(this.columns, this.maxWidth
+          - this.tableStyle.getFixedWidth(this.totalColumns));
+    }
+    this.layoutChanged = false;
+
+    // Rendered separators are kept unless a column width actually changed.
 
-    // First we connect the columns with the cells.
-
-    for (Row r : this.rows) {
-      int startCol = 0;
-      for (Cell cell : r.getCells()) {
-        int endCol = startCol + cell.getColSpan() - 1;
-        try {
-          Column col = this.columns.get(endCol);
-          col.add(cell);
-          startCol = startCol + cell.getColSpan();
-        } catch (IndexOutOfBoundsException e) {
-          // Nothing to do.
-        }
+    boolean widthsChanged = false;
+    for (int i = 0; i < this.totalColumns; i++) {
+      int width = this.columns.get(i).getColumnWidth();
+      if (Log.DEBUG_ENABLED) {
+        Log.debug("width=" + width);
+      }
+      if (width != previousWidths[i]) {
+        widthsChanged = true;
       }
     }
+    if (widthsChanged) {
+      this.tableStyle.columnWidthsChanged();
+    }
+    if (listener != null) {
+      listener.layoutCalculated(System.nanoTime() - start);
+    }
+  }
 
-    // Then we calculate the appropriate column width for each one.
+  private int getRowEnd(final int row) {
+    return row + 1 < this.totalRows ? this.rowStarts[row + 1] : this.cells
+        .size();
+  }
 
-    for (Column col : this.columns) {
-      col.calculateWidth(this.columns, this.tableStyle.borderStyle
-          .getTCCorner().length());
-      Log.debug("width=" + col.getColumnWidth());
-    }
+  int getTotalRows() {
+    return this.totalRows;
   }
 
-  List<Row> getRows() {
-    return this.rows;
+  Row getRow(final int row) {
+    int first = this.rowStarts[row];
+    return new Row(this.cells, first, getRowEnd(row) - first);
   }
 
   List<Column> getColumns() {
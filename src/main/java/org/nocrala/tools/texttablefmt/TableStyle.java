@@ -1,8 +1,15 @@
 package org.nocrala.tools.texttablefmt;
 
 import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import org.nocrala.tools.utils.Filler;
 import org.nocrala.tools.utils.Log;
@@ -10,6 +17,16 @@ import org.nocrala.tools.utils.TextEncoder;
 
 class TableStyle {
 
+  // Rows rendered by each task of a parallel rendering.
+
+  private static final int PARALLEL_CHUNK_ROWS = 1024;
+
+  // Chunks rendered ahead of the one being written, per pool thread.
+
+  private static final int PARALLEL_CHUNKS_AHEAD = 2;
+
+  private static final int MAX_ENCODED_SEPARATORS = 256;
+
   private ShownBorders shownBorders;
 
   BorderStyle borderStyle;
@@ -20,6 +37,51 @@ class TableStyle {
 
   private String prompt;
 
+  // Reusable buffers: every line is rendered into the same StringBuilder, and
+  // copied through the same char array when writing to a Writer.
+
+  private StringBuilder line;
+
+  private char[] chars;
+
+  private StringBuilder escaped;
+
+  private SeparatorCache separators;
+
+  // Prompt, border tiles and separator lines already encoded with the charset
+  // of the ByteSink being written, and the cell being written to it.
+
+  private Charset encodedCharset;
+
+  private byte[] encodedPrompt;
+
+  private byte[] encodedLeft;
+
+  private byte[] encodedCenter;
+
+  private byte[] encodedRight;
+
+  private IdentityHashMap<String, byte[]> encodedSeparators;
+
+  private StringBuilder cell;
+
+  // Wrappers of the wrapped cells of the row being rendered, by cell, and if
+  // any of them has lines left after the last rendered line.
+
+  private LineWrapper[] wrappers;
+
+  private boolean moreLines;
+
+  // Metrics, only collected when there's a listener.
+
+  private RenderListener listener;
+
+  private long writtenChars;
+
+  private int abbreviatedCells;
+
+  private int formattedCells;
+
   public TableStyle(final BorderStyle borderStyle,
       final ShownBorders shownBorders, final boolean escapeXml,
       final int leftMargin, final String prompt) {
@@ -35,67 +97,224 @@ class TableStyle {
         this.prompt = "";
       }
     }
+    this.line = new StringBuilder();
+    this.chars = new char[0];
+    this.escaped = new StringBuilder();
+    this.separators = new SeparatorCache(this.shownBorders, this.borderStyle);
+    this.encodedCharset = null;
+    this.encodedSeparators = new IdentityHashMap<String, byte[]>();
+    this.cell = new StringBuilder();
+    this.wrappers = new LineWrapper[0];
+    this.moreLines = false;
   }
 
-  private String escapeXmlIfRequired(final String txt) {
-    if (this.escapeXml) {
-      StringBuffer sb = new StringBuffer();
-      sb.append(TextEncoder.escapeXml(txt));
-      return sb.toString();
-    }
-    return txt;
+  /**
+   * Creates a style with the same settings and its own buffers and
+   * separators, so it can render in another thread.
+   */
+  private TableStyle(final TableStyle style) {
+    this(style.borderStyle, style.shownBorders, style.escapeXml, 0,
+        style.prompt);
+    this.listener = style.listener;
   }
 
-  private String escapeXmlIfRequired(final String txt1, final String txt2) {
-    if (this.escapeXml) {
-      StringBuffer sb = new StringBuffer();
-      sb.append(TextEncoder.escapeXml(txt1));
-      sb.append(TextEncoder.escapeXml(txt2));
-      return sb.toString();
+  RenderListener getRenderListener() {
+    return this.listener;
+  }
+
+  void setRenderListener(final RenderListener listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * Discards the rendered separators. Must be called whenever the column
+   * widths change.
+   */
+  void columnWidthsChanged() {
+    this.separators.clear();
+    this.encodedSeparators.clear();
+  }
+
+  /**
+   * Returns the width of a content line not taken by the columns: the prompt
+   * or left margin, the borders and the cell separators.
+   */
+  int getFixedWidth(final int totalColumns) {
+    int width = this.prompt.length();
+    if (this.shownBorders.showLeftBorder()) {
+      width = width + this.borderStyle.getLeftWidth();
     }
-    return txt1 + txt2;
+    for (int j = 1; j < totalColumns; j++) {
+      if (showSeparator(j, totalColumns)) {
+        width = width + this.borderStyle.getCenterWidth();
+      }
+    }
+    if (this.shownBorders.showRightBorder()) {
+      width = width + this.borderStyle.getRightWidth();
+    }
+    return width;
   }
 
   String renderTable(final Table table) {
-    StringBuffer sb = new StringBuffer();
-    int totalRows = table.getRows().size();
+    StringBuilder sb = new StringBuilder();
+    try {
+      renderTable(table, sb);
+    } catch (IOException e) {
+      // A StringBuilder does not throw IOException.
+      Log.error(e);
+    }
+    return sb.toString();
+  }
+
+  void renderTable(final Table table, final Appendable ap) throws IOException {
+    int totalRows = table.getTotalRows();
     Row previousRow = null;
-    boolean firstRenderedRow = true;
     for (int i = 0; i < totalRows; i++) {
-      Row r = table.getRows().get(i);
+      Row r = table.getRow(i);
       boolean isFirst = i == 0;
       boolean isSecond = i == 1;
       boolean isIntermediate = (i > 1 && i < totalRows - 1);
       boolean isLast = i == (totalRows - 1);
-      List<String> rr = renderRow(r, previousRow, table.getColumns(), isFirst,
-          isSecond, isIntermediate, isLast);
-      for (String line : rr) {
-        if (firstRenderedRow) {
-          firstRenderedRow = false;
-        } else {
-          sb.append("\n");
+      renderRow(ap, r, previousRow, table.getColumns(), isFirst, isSecond,
+          isIntermediate, isLast);
+      previousRow = r;
+    }
+  }
+
+  /**
+   * Renders the rows from <code>from</code> (inclusive) to <code>to</code>
+   * (exclusive), with the same lines they have in the whole table. The
+   * separator above the first one depends on its previous row, that is not
+   * rendered. The first line is not preceded by a line break.
+   */
+  void renderRows(final Table table, final Appendable ap, final int from,
+      final int to) throws IOException {
+    int totalRows = table.getTotalRows();
+    Row previousRow = from > 0 ? table.getRow(from - 1) : null;
+    for (int i = from; i < to; i++) {
+      Row r = table.getRow(i);
+      boolean isFirst = i == 0;
+      boolean isSecond = i == 1;
+      boolean isIntermediate = (i > 1 && i < totalRows - 1);
+      boolean isLast = i == (totalRows - 1);
+      renderRow(ap, r, previousRow, table.getColumns(), isFirst, isSecond,
+          isIntermediate, isLast, i == from);
+      previousRow = r;
+    }
+  }
+
+  /**
+   * Renders the table splitting its rows in chunks, rendered in parallel by
+   * the pool, each one into its own buffer. The buffers are written in order,
+   * as soon as each one is ready, so the result is the same as the sequential
+   * rendering. Every row is rendered knowing only its previous row, so chunks
+   * are independent.
+   */
+  void renderTable(final Table table, final Appendable ap,
+      final ForkJoinPool pool) throws IOException {
+    int totalRows = table.getTotalRows();
+    int totalChunks = (totalRows + PARALLEL_CHUNK_ROWS - 1)
+        / PARALLEL_CHUNK_ROWS;
+    if (totalChunks <= 1) {
+      renderTable(table, ap);
+      return;
+    }
+    int chunksAhead = pool.getParallelism() * PARALLEL_CHUNKS_AHEAD;
+    LinkedList<ForkJoinTask<StringBuilder>> pending =
+        new LinkedList<ForkJoinTask<StringBuilder>>();
+    int nextChunk = 0;
+    try {
+      for (int chunk = 0; chunk < totalChunks; chunk++) {
+        while (nextChunk < totalChunks && nextChunk - chunk <= chunksAhead) {
+          int from = nextChunk * PARALLEL_CHUNK_ROWS;
+          int to = Math.min(from + PARALLEL_CHUNK_ROWS, totalRows);
+          pending.add(pool.submit(new ChunkRenderer(table, from, to)));
+          nextChunk++;
         }
-        sb.append(line);
+        ap.append(pending.removeFirst().join());
+      }
+    } finally {
+      for (ForkJoinTask<StringBuilder> task : pending) {
+        task.cancel(false);
       }
-      previousRow = r;
     }
-    return sb.toString();
+  }
+
+  private class ChunkRenderer implements Callable<StringBuilder> {
+
+    private Table table;
+
+    private int from;
+
+    private int to;
+
+    ChunkRenderer(final Table table, final int from, final int to) {
+      this.table = table;
+      this.from = from;
+      this.to = to;
+    }
+
+    public StringBuilder call() {
+      TableStyle style = new TableStyle(TableStyle.this);
+      StringBuilder sb = new StringBuilder();
+      int totalRows = this.table.getTotalRows();
+      Row previousRow = this.from > 0 ? this.table.getRow(this.from - 1)
+          : null;
+      try {
+        for (int i = this.from; i < this.to; i++) {
+          Row r = this.table.getRow(i);
+          boolean isFirst = i == 0;
+          boolean isSecond = i == 1;
+          boolean isIntermediate = (i > 1 && i < totalRows - 1);
+          boolean isLast = i == (totalRows - 1);
+          style.renderRow(sb, r, previousRow, this.table.getColumns(),
+              isFirst, isSecond, isIntermediate, isLast);
+          previousRow = r;
+        }
+      } catch (IOException e) {
+        // A StringBuilder does not throw IOException.
+        Log.error(e);
+      }
+      return sb;
+    }
+
   }
 
   String[] renderAsStringArray(final Table table) {
-    int totalRows = table.getRows().size();
+    int totalRows = table.getTotalRows();
     Row previousRow = null;
     List<String> allLines = new ArrayList<String>();
     for (int i = 0; i < totalRows; i++) {
-      Row r = table.getRows().get(i);
+      Row r = table.getRow(i);
       boolean isFirst = i == 0;
       boolean isSecond = i == 1;
       boolean isIntermediate = (i > 1 && i < totalRows - 1);
       boolean isLast = i == (totalRows - 1);
-      List<String> rr = renderRow(r, previousRow, table.getColumns(), isFirst,
-          isSecond, isIntermediate, isLast);
-      for (String line : rr) {
-        allLines.add(line);
+      long start = 0;
+      if (this.listener != null) {
+        start = System.nanoTime();
+        startRowMetrics();
+      }
+      String upper = getUpperSeparator(r, previousRow, table.getColumns(),
+          isFirst, isSecond, isIntermediate, isLast);
+      if (upper != null) {
+        renderSeparatorLine(upper);
+        allLines.add(lineToString());
+      }
+      renderContentLine(r, table.getColumns(), 0);
+      allLines.add(lineToString());
+      for (int line = 1; this.moreLines; line++) {
+        renderContentLine(r, table.getColumns(), line);
+        allLines.add(lineToString());
+      }
+      String lower = getLowerSeparator(r, table.getColumns(), isLast);
+      if (lower != null) {
+        renderSeparatorLine(lower);
+        allLines.add(lineToString());
+      }
+      if (this.listener != null) {
+        this.listener.rowRendered(r.getSize(), this.abbreviatedCells,
+            this.formattedCells, this.writtenChars, System.nanoTime() - start);
       }
       previousRow = r;
     }
@@ -109,58 +328,209 @@ class TableStyle {
     return result;
   }
 
+  /**
+   * Writes the lines of a row straight to the Appendable object, one line at a
+   * time. A row with wrapped cells is rendered as several lines, each one
+   * written as soon as it's rendered. The first line of the first row is not
+   * preceded by a line break. A
+   * <code>ByteSink</code> gets the prompt, the border tiles and the separator
+   * lines already encoded, and the cells one by one.
+   */
   void renderRow(final Appendable ap, final Row r, final Row previousRow,
       final List<Column> columns, final boolean isFirst,
       final boolean isSecond, final boolean isIntermediate, final boolean isLast)
       throws IOException {
-    List<String> rr = renderRow(r, previousRow, columns, isFirst, isSecond,
-        isIntermediate, isLast);
-    boolean firstRenderedRow = isFirst;
-    for (String line : rr) {
-      if (firstRenderedRow) {
-        firstRenderedRow = false;
+    renderRow(ap, r, previousRow, columns, isFirst, isSecond, isIntermediate,
+        isLast, isFirst);
+  }
+
+  /**
+   * Writes the lines of a row, see above. The first line is preceded by a
+   * line break unless <code>firstLine</code> is true.
+   */
+  private void renderRow(final Appendable ap, final Row r,
+      final Row previousRow, final List<Column> columns,
+      final boolean isFirst, final boolean isSecond,
+      final boolean isIntermediate, final boolean isLast,
+      final boolean firstLine) throws IOException {
+    long start = 0;
+    if (this.listener != null) {
+      start = System.nanoTime();
+      startRowMetrics();
+    }
+    ByteSink sink = null;
+    if (ap instanceof ByteSink && !this.escapeXml) {
+      sink = (ByteSink) ap;
+      prepareEncoded(sink.getCharset());
+    }
+    boolean firstRenderedLine = firstLine;
+    String upper = getUpperSeparator(r, previousRow, columns, isFirst,
+        isSecond, isIntermediate, isLast);
+    if (upper != null) {
+      if (sink != null) {
+        writeSeparator(sink, upper, firstRenderedLine);
       } else {
-        ap.append("\n");
+        renderSeparatorLine(upper);
+        writeLine(ap, firstRenderedLine);
+      }
+      firstRenderedLine = false;
+    }
+    if (sink != null) {
+      writeContentLine(sink, r, columns, firstRenderedLine, 0);
+      for (int line = 1; this.moreLines; line++) {
+        writeContentLine(sink, r, columns, false, line);
+      }
+    } else {
+      renderContentLine(r, columns, 0);
+      writeLine(ap, firstRenderedLine);
+      for (int line = 1; this.moreLines; line++) {
+        renderContentLine(r, columns, line);
+        writeLine(ap, false);
+      }
+    }
+    String lower = getLowerSeparator(r, columns, isLast);
+    if (lower != null) {
+      if (sink != null) {
+        writeSeparator(sink, lower, false);
+      } else {
+        renderSeparatorLine(lower);
+        writeLine(ap, false);
+      }
+    }
+    if (this.listener != null) {
+      this.listener.rowRendered(r.getSize(), this.abbreviatedCells,
+          this.formattedCells, this.writtenChars, System.nanoTime() - start);
+    }
+  }
+
+  private void startRowMetrics() {
+    this.writtenChars = 0;
+    this.abbreviatedCells = 0;
+    this.formattedCells = 0;
+  }
+
+  private void writeLine(final Appendable ap, final boolean firstRenderedLine)
+      throws IOException {
+    if (!firstRenderedLine) {
+      ap.append('\n');
+      this.writtenChars++;
+    }
+    StringBuilder out = this.line;
+    if (this.escapeXml && TextEncoder.indexOfXmlEscape(this.line, 0) >= 0) {
+      this.escaped.setLength(0);
+      TextEncoder.escapeXml(this.line, this.escaped);
+      out = this.escaped;
+    }
+    this.writtenChars = this.writtenChars + out.length();
+    if (ap instanceof Writer) {
+      // Writer.append(CharSequence) would create a String copy of the line.
+      int len = out.length();
+      if (this.chars.length < len) {
+        this.chars = new char[len];
       }
-      ap.append(line);
+      out.getChars(0, len, this.chars, 0);
+      ((Writer) ap).write(this.chars, 0, len);
+    } else {
+      ap.append(out);
     }
   }
 
-  private List<String> renderRow(final Row r, final Row previousRow,
+  private void prepareEncoded(final Charset charset) {
+    if (charset.equals(this.encodedCharset)) {
+      return;
+    }
+    this.encodedCharset = charset;
+    this.encodedPrompt = this.prompt.getBytes(charset);
+    this.encodedLeft = this.borderStyle.getLeft().getBytes(charset);
+    this.encodedCenter = this.borderStyle.getCenter().getBytes(charset);
+    this.encodedRight = this.borderStyle.getRight().getBytes(charset);
+    this.encodedSeparators.clear();
+  }
+
+  private void writeSeparator(final ByteSink sink, final String separator,
+      final boolean firstRenderedLine) throws IOException {
+    if (!firstRenderedLine) {
+      sink.append('\n');
+      this.writtenChars++;
+    }
+    byte[] encoded = this.encodedSeparators.get(separator);
+    if (encoded == null) {
+      encoded = (this.prompt + separator).getBytes(this.encodedCharset);
+      if (this.encodedSeparators.size() < MAX_ENCODED_SEPARATORS) {
+        this.encodedSeparators.put(separator, encoded);
+      }
+    }
+    sink.writeEncoded(encoded);
+    this.writtenChars = this.writtenChars + this.prompt.length()
+        + separator.length();
+  }
+
+  private String lineToString() {
+    String txt = this.line.toString();
+    if (this.escapeXml) {
+      txt = TextEncoder.escapeXml(txt);
+    }
+    this.writtenChars = this.writtenChars + txt.length();
+    return txt;
+  }
+
+  /**
+   * Returns the separator line above a row, or null if there's none.
+   */
+  private String getUpperSeparator(final Row r, final Row previousRow,
       final List<Column> columns, final boolean isFirst,
       final boolean isSecond, final boolean isIntermediate, final boolean isLast) {
-    List<String> list = new ArrayList<String>();
     if (isFirst) {
       if (this.shownBorders.showTopBorder()) {
-        list.add(escapeXmlIfRequired(this.prompt,
-            this.shownBorders.renderTopBorder(columns, this.borderStyle, r)));
+        return this.separators.getTopBorder(columns, r);
       }
     } else {
       if (isIntermediate && this.shownBorders.showMiddleSeparator() || //
           isSecond && this.shownBorders.showHeaderSeparator() //
           || isLast && this.shownBorders.showFooterSeparator()) {
-        list.add(escapeXmlIfRequired(this.prompt, this.shownBorders
-            .renderMiddleSeparator(columns, this.borderStyle, previousRow, r)));
+        return this.separators.getMiddleSeparator(columns, previousRow, r);
       }
     }
+    return null;
+  }
 
-    if (Log.isDebugEnabled()) {
+  private void renderContentLine(final Row r, final List<Column> columns,
+      final int line) {
+    if (Log.DEBUG_ENABLED) {
       Log.debug("+++++++ r.getSize()=" + r.getSize());
     }
-    list.add(escapeXmlIfRequired(this.prompt, renderContentRow(r, columns)));
+    startLine();
+    renderContentRow(this.line, r, columns, line);
+  }
 
-    if (isLast) {
-      if (this.shownBorders.showBottomBorder()) {
-        list.add(escapeXmlIfRequired(this.prompt,
-            this.shownBorders.renderBottomBorder(columns, this.borderStyle, r)));
-      }
+  /**
+   * Returns the separator line below a row, or null if there's none.
+   */
+  private String getLowerSeparator(final Row r, final List<Column> columns,
+      final boolean isLast) {
+    if (isLast && this.shownBorders.showBottomBorder()) {
+      return this.separators.getBottomBorder(columns, r);
     }
+    return null;
+  }
+
+  private void renderSeparatorLine(final String separator) {
+    startLine();
+    this.line.append(separator);
+  }
 
-    return list;
+  private void startLine() {
+    this.line.setLength(0);
+    this.line.append(this.prompt);
   }
 
-  private String renderContentRow(final Row r, final List<Column> columns) {
-    StringBuffer sb = new StringBuffer();
+  /**
+   * Renders a line of a row: the first one, or a following one of a row with
+   * wrapped cells.
+   */
+  private void renderContentRow(final StringBuilder sb, final Row r,
+      final List<Column> columns, final int line) {
+    this.moreLines = false;
 
     // Left border
 
@@ -172,11 +542,12 @@ class TableStyle {
 
     int totalColumns = columns.size();
     int j = 0;
-    for (Cell cell : r.getCells()) {
+    for (int c = 0; c < r.getSize(); c++) {
+      int colSpan = r.getColSpan(c);
 
       // cell separator
 
-      if (Log.isDebugEnabled()) {
+      if (Log.DEBUG_ENABLED) {
         Log.debug("j=" + j);
         Log.debug("this.shownBorders.showCenterSeparator()="
             + this.shownBorders.showCenterSeparator());
@@ -187,50 +558,28 @@ class TableStyle {
         Log.debug("this.borderTiles.getCenter()="
             + this.borderStyle.getCenter());
       }
-      if (j != 0) {
-        if ((j > 1 && j < totalColumns - 1)
-            && this.shownBorders.showCenterSeparator()
-            || ((j == 1) && (this.shownBorders.showLeftSeparator()))
-            || ((j == (totalColumns - 1)) && (this.shownBorders
-                .showRightSeparator()))) {
-
-          if (Log.isDebugEnabled()) {
-            Log.debug("--- appending '" + this.borderStyle.getCenter()
-                + "' ---");
-            Log.debug("this.borderTiles.getLeftWidth()="
-                + this.borderStyle.getLeftWidth());
-            Log.debug("this.borderTiles.getCenterWidth()="
-                + this.borderStyle.getCenterWidth());
-            Log.debug("this.borderTiles.getRightWidth()="
-                + this.borderStyle.getRightWidth());
-            Log.debug("this.borderTiles.getHorizontalWidth()="
-                + this.borderStyle.getHorizontalWidth());
-          }
-          
-          sb.append(this.borderStyle.getCenter());
+      if (showSeparator(j, totalColumns)) {
+        if (Log.DEBUG_ENABLED) {
+          Log.debug("--- appending '" + this.borderStyle.getCenter()
+              + "' ---");
+          Log.debug("this.borderTiles.getLeftWidth()="
+              + this.borderStyle.getLeftWidth());
+          Log.debug("this.borderTiles.getCenterWidth()="
+              + this.borderStyle.getCenterWidth());
+          Log.debug("this.borderTiles.getRightWidth()="
+              + this.borderStyle.getRightWidth());
+          Log.debug("this.borderTiles.getHorizontalWidth()="
+              + this.borderStyle.getHorizontalWidth());
         }
+        sb.append(this.borderStyle.getCenter());
       }
 
       // Cell content
 
-      int sepWidth = this.borderStyle.getCenter().length();
-      int width = -sepWidth;
-      Log.debug("* width=" + width);
-      for (int pos = j; pos < j + cell.getColSpan(); pos++) {
-        width = width + sepWidth + columns.get(pos).getColumnWidth();
-        Log.debug("** columns.get(" + j + ").getColumnWidth()="
-            + columns.get(pos).getColumnWidth() + "  width=" + width);
-      }
-      Log.debug("*** width=" + width);
-      String renderedCell = cell.render(width);
-
-      if (Log.isDebugEnabled()) {
-        Log.debug("content='" + cell.getContent() + "' --> renderedCell="
-            + renderedCell);
-      }
-      sb.append(renderedCell);
+      int width = getCellWidth(columns, j, colSpan);
+      renderCell(sb, r, c, width, line);
 
-      j = j + cell.getColSpan();
+      j = j + colSpan;
     }
 
     // Render missing cells
@@ -239,21 +588,14 @@ class TableStyle {
 
       // cell separator
 
-      if (j != 0) {
-        if ((j > 1 && j < totalColumns - 1)
-            && this.shownBorders.showCenterSeparator()
-            || ((j == 1) && (this.shownBorders.showLeftSeparator()))
-            || ((j == (totalColumns - 1)) && (this.shownBorders
-                .showRightSeparator()))) {
-          sb.append(this.borderStyle.getCenter());
-        }
+      if (showSeparator(j, totalColumns)) {
+        sb.append(this.borderStyle.getCenter());
       }
 
       // Cell content
 
       Column col = columns.get(j);
-      String renderedCell = CellStyle.renderNullCell(col.getColumnWidth());
-      sb.append(renderedCell);
+      CellStyle.renderNullCell(sb, col.getColumnWidth());
     }
 
     // Right border
@@ -261,8 +603,160 @@ class TableStyle {
     if (this.shownBorders.showRightBorder()) {
       sb.append(this.borderStyle.getRight());
     }
+  }
 
-    return sb.toString();
+  /**
+   * Writes a content line to a ByteSink, the same as
+   * <code>renderContentRow()</code> renders it. The border tiles are written
+   * already encoded, and each cell is rendered on its own and appended to the
+   * sink, so only cells with non-ASCII characters are encoded.
+   */
+  private void writeContentLine(final ByteSink sink, final Row r,
+      final List<Column> columns, final boolean firstRenderedLine,
+      final int line) throws IOException {
+    this.moreLines = false;
+    if (!firstRenderedLine) {
+      sink.append('\n');
+      this.writtenChars++;
+    }
+    sink.writeEncoded(this.encodedPrompt);
+    long written = this.prompt.length();
+
+    // Left border
+
+    if (this.shownBorders.showLeftBorder()) {
+      sink.writeEncoded(this.encodedLeft);
+      written = written + this.borderStyle.getLeft().length();
+    }
+
+    // Cells
+
+    int centerLength = this.borderStyle.getCenter().length();
+    int totalColumns = columns.size();
+    int j = 0;
+    for (int c = 0; c < r.getSize() || j < totalColumns; c++) {
+      int colSpan = c < r.getSize() ? r.getColSpan(c) : 1;
+      if (showSeparator(j, totalColumns)) {
+        sink.writeEncoded(this.encodedCenter);
+        written = written + centerLength;
+      }
+      this.cell.setLength(0);
+      if (c < r.getSize()) {
+        int width = getCellWidth(columns, j, colSpan);
+        renderCell(this.cell, r, c, width, line);
+      } else {
+        // Missing cell
+        CellStyle.renderNullCell(this.cell, columns.get(j).getColumnWidth());
+      }
+      sink.append(this.cell);
+      written = written + this.cell.length();
+      j = j + colSpan;
+    }
+
+    // Right border
+
+    if (this.shownBorders.showRightBorder()) {
+      sink.writeEncoded(this.encodedRight);
+      written = written + this.borderStyle.getRight().length();
+    }
+    this.writtenChars = this.writtenChars + written;
+  }
+
+  /**
+   * Tells if the cell separator is shown before the cell that starts at the
+   * specified column.
+   */
+  private boolean showSeparator(final int j, final int totalColumns) {
+    if (j == 0) {
+      return false;
+    }
+    return (j > 1 && j < totalColumns - 1)
+        && this.shownBorders.showCenterSeparator()
+        || ((j == 1) && (this.shownBorders.showLeftSeparator()))
+        || ((j == (totalColumns - 1)) && (this.shownBorders
+            .showRightSeparator()));
+  }
+
+  /**
+   * Returns the width of a cell: the width of the columns it spans plus the
+   * separators between them.
+   */
+  private int getCellWidth(final List<Column> columns, final int j,
+      final int colSpan) {
+    int sepWidth = this.borderStyle.getCenter().length();
+    int width = -sepWidth;
+    if (Log.DEBUG_ENABLED) {
+      Log.debug("* width=" + width);
+    }
+    for (int pos = j; pos < j + colSpan; pos++) {
+      width = width + sepWidth + columns.get(pos).getColumnWidth();
+      if (Log.DEBUG_ENABLED) {
+        Log.debug("** columns.get(" + j + ").getColumnWidth()="
+            + columns.get(pos).getColumnWidth() + "  width=" + width);
+      }
+    }
+    if (Log.DEBUG_ENABLED) {
+      Log.debug("*** width=" + width);
+    }
+    return width;
+  }
+
+  /**
+   * Renders a line of a cell. The first line of a row starts wrapping its
+   * wrapped cells; the following lines continue them, and are blank for the
+   * other cells.
+   */
+  private void renderCell(final StringBuilder sb, final Row r, final int c,
+      final int width, final int line) {
+    if (line == 0) {
+      String content = r.getContent(c);
+      CellStyle style = r.getStyle(c);
+      boolean wrapped = style.isWrapped(content, width, r.getWidth(c));
+      if (wrapped) {
+        LineWrapper wrapper = getWrapper(c);
+        wrapper.start(content, style, width);
+        wrapper.renderNextLine(sb);
+        this.moreLines = this.moreLines || wrapper.hasNextLine();
+      } else {
+        if (c < this.wrappers.length && this.wrappers[c] != null) {
+          this.wrappers[c].clear();
+        }
+        r.render(c, sb, width);
+      }
+      countCell(r, c, width, wrapped);
+      return;
+    }
+    LineWrapper wrapper = c < this.wrappers.length ? this.wrappers[c] : null;
+    if (wrapper != null && wrapper.hasNextLine()) {
+      wrapper.renderNextLine(sb);
+      this.moreLines = this.moreLines || wrapper.hasNextLine();
+    } else {
+      CellStyle.renderNullCell(sb, width);
+    }
+  }
+
+  private LineWrapper getWrapper(final int c) {
+    if (c >= this.wrappers.length) {
+      LineWrapper[] newWrappers = new LineWrapper[c + 1];
+      System.arraycopy(this.wrappers, 0, newWrappers, 0, this.wrappers.length);
+      this.wrappers = newWrappers;
+    }
+    if (this.wrappers[c] == null) {
+      this.wrappers[c] = new LineWrapper();
+    }
+    return this.wrappers[c];
+  }
+
+  private void countCell(final Row r, final int c, final int width,
+      final boolean wrapped) {
+    if (this.listener != null) {
+      if (!wrapped && r.getWidth(c) > width) {
+        this.abbreviatedCells++;
+      }
+      if (r.isFormatted(c)) {
+        this.formattedCells++;
+      }
+    }
   }
 
 }
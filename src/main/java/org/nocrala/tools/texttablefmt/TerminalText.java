@@ -0,0 +1,156 @@
+package org.nocrala.tools.texttablefmt;
+
+/**
+ * <p>
+ * Escape-aware scanner for cell contents. It measures the visible width of a
+ * text, whether it contains terminal format sequences (like ESCAPE[33m) and
+ * where to crop it, each in a single pass and without creating intermediate
+ * strings.
+ * </p>
+ * 
+ * <p>
+ * To avoid allocating a result object per cell, results are packed in a
+ * <code>long</code> and read with the static accessors of this class.
+ * </p>
+ */
+final class TerminalText {
+
+  static final char ESC = 27;
+
+  // Characters below this one are always one column wide.
+  private static final char FIRST_NON_NARROW_CHAR = 0x0300;
+
+  private static final long INT_MASK = 0xFFFFFFFFL;
+
+  private static final long WIDTH_MASK = 0x7FFFFFFFL;
+
+  private static final long FORMATTED = 1L << 63;
+
+  private TerminalText() {
+  }
+
+  /**
+   * Measures the visible width of a text.
+   * 
+   * @param txt
+   *          Text to measure (not null).
+   * @param handleTerminalFormats
+   *          If true, terminal format sequences have zero width; otherwise
+   *          they are measured as any other character.
+   * @param displayWidth
+   *          Width of each character.
+   * @return the visible width (read it with <code>getWidth()</code>), and if
+   *         the text has terminal format sequences (read it with
+   *         <code>isFormatted()</code>).
+   */
+  static long measure(final String txt, final boolean handleTerminalFormats,
+      final DisplayWidth displayWidth) {
+    return measure(txt, 0, txt.length(), handleTerminalFormats, displayWidth);
+  }
+
+  /**
+   * Measures the visible width of a part of a text, from <code>from</code>
+   * (inclusive) to <code>to</code> (exclusive). See <code>measure()</code>.
+   */
+  static long measure(final String txt, final int from, final int to,
+      final boolean handleTerminalFormats, final DisplayWidth displayWidth) {
+    int width = 0;
+    boolean formatted = false;
+    int i = from;
+    int len = to;
+    while (i < len) {
+      char c = txt.charAt(i);
+      if (c == ESC && handleTerminalFormats) {
+        formatted = true;
+        int m = txt.indexOf('m', i);
+        if (m == -1 || m >= len) {
+          break;
+        }
+        i = m + 1;
+      } else if (c < FIRST_NON_NARROW_CHAR) {
+        width++;
+        i++;
+      } else {
+        int cp = txt.codePointAt(i);
+        width = width + displayWidth.getWidth(cp);
+        i = i + Character.charCount(cp);
+      }
+    }
+    return pack(0, width, formatted);
+  }
+
+  /**
+   * Finds where to crop a text so its visible part is not wider than
+   * <code>maxWidth</code>. Terminal format sequences found before the next
+   * visible character are kept.
+   * 
+   * @param txt
+   *          Text to crop (not null).
+   * @param maxWidth
+   *          Maximum visible width.
+   * @param displayWidth
+   *          Width of each character.
+   * @return the number of chars to keep (read it with <code>getLength()</code>
+   *         ), their visible width, that can be less than
+   *         <code>maxWidth</code> when a wide character does not fit (read it
+   *         with <code>getWidth()</code>), and if the kept chars have terminal
+   *         format sequences (read it with <code>isFormatted()</code>).
+   */
+  static long crop(final String txt, final int maxWidth,
+      final DisplayWidth displayWidth) {
+    return crop(txt, 0, txt.length(), maxWidth, displayWidth);
+  }
+
+  /**
+   * Finds where to crop a part of a text, from <code>from</code> (inclusive)
+   * to <code>to</code> (exclusive). The number of chars to keep is counted
+   * from <code>from</code>. See <code>crop()</code>.
+   */
+  static long crop(final String txt, final int from, final int to,
+      final int maxWidth, final DisplayWidth displayWidth) {
+    int width = 0;
+    boolean formatted = false;
+    int i = from;
+    int len = to;
+    while (i < len) {
+      char c = txt.charAt(i);
+      if (c == ESC) {
+        formatted = true;
+        int m = txt.indexOf('m', i);
+        if (m == -1 || m >= len) {
+          i = len;
+        } else {
+          i = m + 1;
+        }
+      } else {
+        int cp = c < FIRST_NON_NARROW_CHAR ? c : txt.codePointAt(i);
+        int w = c < FIRST_NON_NARROW_CHAR ? 1 : displayWidth.getWidth(cp);
+        if (width + w > maxWidth) {
+          break;
+        }
+        i = i + Character.charCount(cp);
+        width = width + w;
+      }
+    }
+    return pack(i - from, width, formatted);
+  }
+
+  static long pack(final int length, final int width,
+      final boolean formatted) {
+    return (length & INT_MASK) | ((width & WIDTH_MASK) << 32)
+        | (formatted ? FORMATTED : 0);
+  }
+
+  static int getLength(final long scan) {
+    return (int) (scan & INT_MASK);
+  }
+
+  static int getWidth(final long scan) {
+    return (int) ((scan >>> 32) & WIDTH_MASK);
+  }
+
+  static boolean isFormatted(final long scan) {
+    return (scan & FORMATTED) != 0;
+  }
+
+}
@@ -0,0 +1,196 @@
+package org.nocrala.tools.texttablefmt;
+
+import java.util.List;
+
+/**
+ * Collects the widths of the cells of a table as they are added, keeping only
+ * the widest cell for each column and for each colspan, so column widths can
+ * be calculated later without keeping the cells in memory. Each colspan is
+ * kept once, no matter how many cells share it, so calculating the widths
+ * doesn't depend on the number of cells.
+ */
+class WidthAccumulator {
+
+  private int totalColumns;
+
+  // widest non-spanning cell, per column
+
+  private int[] widths;
+
+  // widest spanning cell, per end column and start column
+
+  private int[][] spanWidths;
+
+  WidthAccumulator(final int totalColumns) {
+    this.totalColumns = totalColumns;
+    this.widths = new int[totalColumns];
+    this.spanWidths = new int[totalColumns][];
+    for (int i = 0; i < totalColumns; i++) {
+      this.widths[i] = -1;
+    }
+  }
+
+  void add(final int startCol, final int colSpan, final int width) {
+    int endCol = startCol + colSpan - 1;
+    if (endCol >= this.totalColumns) {
+      return;
+    }
+    if (colSpan <= 1) {
+      if (width > this.widths[endCol]) {
+        this.widths[endCol] = width;
+      }
+      return;
+    }
+    int[] starts = this.spanWidths[endCol];
+    if (starts == null) {
+      starts = new int[endCol];
+      for (int i = 0; i < endCol; i++) {
+        starts[i] = -1;
+      }
+      this.spanWidths[endCol] = starts;
+    }
+    if (width > starts[startCol]) {
+      starts[startCol] = width;
+    }
+  }
+
+  /**
+   * Sets the width of the columns. Each column first gets its widest
+   * non-spanning cell, within its width range. Then the spanning cells are
+   * solved, shortest spans first so nested spans are solved before the spans
+   * around them: when a spanning cell is wider than the columns it covers,
+   * the missing width is distributed among them by their weights, without
+   * going over their maximum widths. As with non-spanning cells, a spanning
+   * cell counts no wider than the maximum width of its last column.
+   */
+  void calculate(final List<Column> columns, final int separatorWidth) {
+    int[] width = new int[this.totalColumns];
+    for (int col = 0; col < this.totalColumns; col++) {
+      Column column = columns.get(col);
+      width[col] = column.getMinWidth();
+      if (this.widths[col] >= 0) {
+        int tw = Math.min(this.widths[col], column.getMaxWidth());
+        if (tw > width[col]) {
+          width[col] = tw;
+        }
+      }
+    }
+
+    // Span constraints, sorted by span length
+
+    int totalSpans = 0;
+    for (int end = 0; end < this.totalColumns; end++) {
+      int[] starts = this.spanWidths[end];
+      if (starts != null) {
+        for (int start = 0; start < end; start++) {
+          if (starts[start] >= 0) {
+            totalSpans++;
+          }
+        }
+      }
+    }
+    if (totalSpans > 0) {
+      int[] byLength = new int[this.totalColumns + 1];
+      for (int end = 0; end < this.totalColumns; end++) {
+        int[] starts = this.spanWidths[end];
+        if (starts != null) {
+          for (int start = 0; start < end; start++) {
+            if (starts[start] >= 0) {
+              byLength[end - start + 1]++;
+            }
+          }
+        }
+      }
+      int pos = 0;
+      for (int length = 0; length <= this.totalColumns; length++) {
+        int count = byLength[length];
+        byLength[length] = pos;
+        pos = pos + count;
+      }
+      int[] spanStarts = new int[totalSpans];
+      int[] spanEnds = new int[totalSpans];
+      for (int end = 0; end < this.totalColumns; end++) {
+        int[] starts = this.spanWidths[end];
+        if (starts != null) {
+          for (int start = 0; start < end; start++) {
+            if (starts[start] >= 0) {
+              int n = byLength[end - start + 1]++;
+              spanStarts[n] = start;
+              spanEnds[n] = end;
+            }
+          }
+        }
+      }
+
+      for (int i = 0; i < totalSpans; i++) {
+        int start = spanStarts[i];
+        int end = spanEnds[i];
+        long covered = (long) (end - start) * separatorWidth;
+        for (int col = start; col <= end; col++) {
+          covered = covered + width[col];
+        }
+        int needed = Math.min(this.spanWidths[end][start], columns.get(end)
+            .getMaxWidth());
+        long missing = needed - covered;
+        if (missing > 0) {
+          distribute(columns, width, start, end, missing);
+        }
+      }
+    }
+
+    for (int col = 0; col < this.totalColumns; col++) {
+      columns.get(col).setWidth(width[col]);
+    }
+  }
+
+  /**
+   * Widens the columns of a span by the missing width, in proportion to
+   * their weights, or evenly if none has weight. Columns at their maximum
+   * width are not widened; if all of them are, the span stays narrower.
+   */
+  private static void distribute(final List<Column> columns,
+      final int[] width, final int start, final int end, final long missing) {
+    long remaining = missing;
+    while (remaining > 0) {
+      long totalWeight = 0;
+      int open = 0;
+      for (int col = start; col <= end; col++) {
+        if (width[col] < columns.get(col).getMaxWidth()) {
+          totalWeight = totalWeight + columns.get(col).getWeight();
+          open++;
+        }
+      }
+      if (open == 0) {
+        return;
+      }
+      boolean even = totalWeight == 0;
+      long given = 0;
+      for (int col = start; col <= end; col++) {
+        Column column = columns.get(col);
+        long room = (long) column.getMaxWidth() - width[col];
+        if (room > 0) {
+          long share = even ? remaining / open : remaining * column.getWeight()
+              / totalWeight;
+          share = Math.min(share, room);
+          width[col] = width[col] + (int) share;
+          given = given + share;
+        }
+      }
+
+      // What's left after rounding goes one by one to the rightmost columns.
+
+      if (given == 0) {
+        for (int col = end; col >= start && remaining - given > 0; col--) {
+          Column column = columns.get(col);
+          if (width[col] < column.getMaxWidth()
+              && (even || column.getWeight() > 0)) {
+            width[col]++;
+            given++;
+          }
+        }
+      }
+      remaining = remaining - given;
+    }
+  }
+
+}
@@ -1,13 +1,133 @@
 package org.nocrala.tools.utils;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Repeats a fill string (blank spaces by default) a number of times. Fill
+ * runs are built once per fill string, 256 times the fill string, and then
+ * sliced as needed. Wider fills append the run several times.
+ */
 public class Filler {
 
+  private static final int MAX_CACHED_WIDTH = 256;
+
+  // Fill strings are usually blank spaces and border tiles. Others are not
+  // cached beyond this limit.
+
+  private static final int MAX_CACHED_RUNS = 64;
+
+  private static final String SPACES = buildRun(" ", MAX_CACHED_WIDTH);
+
+  private static final ConcurrentHashMap<String, String> runs =
+      new ConcurrentHashMap<String, String>();
+
   public static String getFiller(final int width) {
     return getFiller(" ", width);
   }
 
   public static String getFiller(final String txt, final int width) {
-    StringBuffer sb = new StringBuffer();
+    String fill = fillText(txt);
+    if (width <= 0 || fill.length() == 0) {
+      return "";
+    }
+    String run = getRun(fill);
+    long length = (long) width * fill.length();
+    if (length > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Fill too long: " + width
+          + " times a " + fill.length() + " chars fill string.");
+    }
+    if (length == run.length()) {
+      return run;
+    }
+    if (length < run.length()) {
+      return run.substring(0, (int) length);
+    }
+    StringBuilder sb = new StringBuilder((int) length);
+    appendFiller(sb, fill, width);
+    return sb.toString();
+  }
+
+  public static void appendFiller(final StringBuilder sb, final int width) {
+    appendFiller(sb, " ", width);
+  }
+
+  public static void appendFiller(final StringBuilder sb, final String txt,
+      final int width) {
+    String fill = fillText(txt);
+    if (width <= 0 || fill.length() == 0) {
+      return;
+    }
+    String run = getRun(fill);
+    long remaining = (long) width * fill.length();
+    while (remaining > 0) {
+      int n = (int) Math.min(remaining, run.length());
+      sb.append(run, 0, n);
+      remaining = remaining - n;
+    }
+  }
+
+  /**
+   * Writes a fill string repeated a number of times to an Appendable object,
+   * as slices of the cached run. Nothing is allocated when writing to a
+   * <code>StringBuilder</code> or to a <code>Writer</code>.
+   *
+   * @param ap
+   *          Where to write the fill.
+   * @param txt
+   *          Fill string.
+   * @param width
+   *          Times the fill string is repeated.
+   * @throws IOException
+   *           if it is not possible to write to the Appendable object.
+   */
+  public static void appendFill(final Appendable ap, final String txt,
+      final int width) throws IOException {
+    String fill = fillText(txt);
+    if (width <= 0 || fill.length() == 0) {
+      return;
+    }
+    String run = getRun(fill);
+    long remaining = (long) width * fill.length();
+    while (remaining > 0) {
+      int n = (int) Math.min(remaining, run.length());
+      if (ap instanceof Writer) {
+        // Writer.append(CharSequence, int, int) would create a substring.
+        ((Writer) ap).write(run, 0, n);
+      } else {
+        ap.append(run, 0, n);
+      }
+      remaining = remaining - n;
+    }
+  }
+
+  /**
+   * Like <code>StringBuilder.append()</code>, a null fill string is filled
+   * with "null".
+   */
+  private static String fillText(final String txt) {
+    return txt != null ? txt : "null";
+  }
+
+  private static String getRun(final String txt) {
+    if (" ".equals(txt)) {
+      return SPACES;
+    }
+    String run = runs.get(txt);
+    if (run == null) {
+      // A long fill string is its own run, so the run size doesn't overflow.
+      run = buildRun(txt, txt.length() > MAX_CACHED_WIDTH ? 1
+          : MAX_CACHED_WIDTH);
+      if (runs.size() < MAX_CACHED_RUNS) {
+        runs.putIfAbsent(txt, run);
+      }
+    }
+    return run;
+  }
+
+  private static String buildRun(final String txt, final int width) {
+    StringBuilder sb = new StringBuilder(width * txt.length());
     for (int i = 0; i < width; i++) {
       sb.append(txt);
     }
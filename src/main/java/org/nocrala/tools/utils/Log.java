@@ -1,10 +1,23 @@
 package org.nocrala.tools.utils;
 
+/**
+ * Minimal logging. The levels are compile-time constants: guard any call that
+ * builds its message, like
+ * 
+ * <pre>
+ * if (Log.DEBUG_ENABLED) {
+ *   Log.debug(&quot;width=&quot; + width);
+ * }
+ * </pre>
+ * 
+ * so the compiler removes the whole block, message included, when the level
+ * is disabled.
+ */
 public class Log {
 
-  private static final boolean DEBUG_ENABLED = false;
-  private static final boolean INFO_ENABLED = false; // Should be false for prod
-  private static final boolean ERROR_ENABLED = true; // Should remain true
+  public static final boolean DEBUG_ENABLED = false;
+  public static final boolean INFO_ENABLED = false; // Should be false for prod
+  public static final boolean ERROR_ENABLED = true; // Should remain true
 
   private static final boolean SHOW_CALLER = false;
   private static final boolean SHOW_CLASS_PACKAGE = false;
@@ -1,22 +1,111 @@
 package org.nocrala.tools.utils;
 
+import java.io.IOException;
+
 public class TextEncoder {
 
+  // Entities of the ASCII characters to escape; null for the ones written as
+  // they are. All non-ASCII characters are escaped.
+
+  private static final String[] ENTITIES = new String[128];
+
+  static {
+    for (int c = 0; c < 32; c++) {
+      ENTITIES[c] = "&#" + c + ";";
+    }
+    char[] specials = { '<', '>', '&', '\'', '\"' };
+    for (char c : specials) {
+      ENTITIES[c] = "&#" + (int) c + ";";
+    }
+  }
+
   public static String escapeXml(final String txt) {
     if (txt == null) {
       return null;
     }
-    StringBuffer sb = new StringBuffer();
-    for (int i = 0; i < txt.length(); i++) {
+    int first = indexOfXmlEscape(txt, 0);
+    if (first < 0) {
+      return txt;
+    }
+    StringBuilder sb = new StringBuilder(txt.length() + 16);
+    sb.append(txt, 0, first);
+    try {
+      appendEscapedXml(txt, first, sb);
+    } catch (IOException e) {
+      // A StringBuilder does not throw IOException.
+      Log.error(e);
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Writes a text escaped using XML entities. Runs of characters that don't
+   * need escaping are appended in bulk.
+   *
+   * @param txt
+   *          Text to escape.
+   * @param ap
+   *          Where to write the escaped text.
+   * @throws IOException
+   *           if it is not possible to write to the Appendable object.
+   */
+  public static void escapeXml(final CharSequence txt, final Appendable ap)
+      throws IOException {
+    int first = indexOfXmlEscape(txt, 0);
+    if (first < 0) {
+      ap.append(txt);
+      return;
+    }
+    ap.append(txt, 0, first);
+    appendEscapedXml(txt, first, ap);
+  }
+
+  /**
+   * Returns the position of the first character that needs to be escaped,
+   * starting at the specified position, or -1 if there's none.
+   */
+  public static int indexOfXmlEscape(final CharSequence txt, final int from) {
+    int length = txt.length();
+    for (int i = from; i < length; i++) {
+      if (needsEscape(txt.charAt(i))) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static void appendEscapedXml(final CharSequence txt,
+      final int from, final Appendable ap) throws IOException {
+    int length = txt.length();
+    int start = from;
+    for (int i = from; i < length; i++) {
       char c = txt.charAt(i);
-      if (c < 32 || c > 127 || c == '<' || c == '>' || c == '&' || c == '\''
-          || c == '\"') {
-        sb.append("&#" + (int) c + ";");
-      } else {
-        sb.append(c);
+      if (needsEscape(c)) {
+        if (start < i) {
+          ap.append(txt, start, i);
+        }
+        appendEntity(c, ap);
+        start = i + 1;
       }
     }
-    return sb.toString();
+    if (start < length) {
+      ap.append(txt, start, length);
+    }
+  }
+
+  private static boolean needsEscape(final char c) {
+    return c >= ENTITIES.length || ENTITIES[c] != null;
+  }
+
+  private static void appendEntity(final char c, final Appendable ap)
+      throws IOException {
+    if (c < ENTITIES.length) {
+      ap.append(ENTITIES[c]);
+    } else if (ap instanceof StringBuilder) {
+      ((StringBuilder) ap).append("&#").append((int) c).append(';');
+    } else {
+      ap.append("&#").append(Integer.toString(c)).append(';');
+    }
   }
 
 }
@@ -4,7 +4,9 @@ import junit.framework.Test;
 import junit.framework.TestResult;
 import junit.framework.TestSuite;
 
+import org.nocrala.tools.utils.FillerTests;
 import org.nocrala.tools.utils.Log;
+import org.nocrala.tools.utils.TextEncoderTests;
 
 public class AllTests {
 
@@ -12,9 +14,17 @@ public class AllTests {
     TestSuite ts = new TestSuite();
     ts.addTestSuite(CellTests.class);
     ts.addTestSuite(RowTests.class);
+    ts.addTestSuite(CellStoreTests.class);
     ts.addTestSuite(TableTests.class);
     ts.addTestSuite(TableColSpanTests.class);
     ts.addTestSuite(StreamingTableTests.class);
+    ts.addTestSuite(ConcurrentStreamingTableTests.class);
+    ts.addTestSuite(SpillingTableTests.class);
+    ts.addTestSuite(ByteSinkTests.class);
+    ts.addTestSuite(FileSinkTests.class);
+    ts.addTestSuite(RenderHistogramTests.class);
+    ts.addTestSuite(FillerTests.class);
+    ts.addTestSuite(TextEncoderTests.class);
     return ts;
   }
 
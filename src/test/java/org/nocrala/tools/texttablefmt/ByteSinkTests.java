@@ -0,0 +1,106 @@
+package org.nocrala.tools.texttablefmt;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+
+import junit.framework.TestCase;
+
+public class ByteSinkTests extends TestCase {
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  public ByteSinkTests(final String txt) {
+    super(txt);
+  }
+
+  public void testAppend() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ByteSink sink = new ByteSink(out);
+    sink.append("ab\u00E9").append('c').append("x\u2500\uD83Dx", 1, 3);
+    sink.append("\uDE00");
+    sink.flush();
+    assertEquals("ab\u00E9c\u2500\uD83D\uDE00",
+        new String(out.toByteArray(), "UTF-8"));
+    assertEquals(out.size(), sink.getBytesWritten());
+  }
+
+  public void testChannel() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ByteSink sink = new ByteSink(Channels.newChannel(out), UTF_8, 16);
+    StringBuilder expected = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      String txt = "row " + i + " \u2502\u00E9\u2502\n";
+      sink.append(txt);
+      expected.append(txt);
+    }
+    sink.close();
+    assertEquals(expected.toString(), new String(out.toByteArray(), "UTF-8"));
+  }
+
+  public void testTable() throws IOException {
+    BorderStyle[] styles = { BorderStyle.CLASSIC,
+        BorderStyle.UNICODE_BOX_DOUBLE_BORDER };
+    for (BorderStyle style : styles) {
+      for (boolean escapeXml : new boolean[] { false, true }) {
+        Table t = new Table(3, style, ShownBorders.ALL, escapeXml, "> ");
+        t.addCell("Name");
+        t.addCell("Caf\u00E9 <b>", 2);
+        t.addRow("abc", "\u00E1rbol", "12345");
+        t.addCell("spans all", 3);
+        t.addRow("x", null);
+        t.addCell("last");
+
+        RenderHistogram stringMetrics = new RenderHistogram();
+        t.setRenderListener(stringMetrics);
+        String expected = t.render();
+        RenderHistogram byteMetrics = new RenderHistogram();
+        t.setRenderListener(byteMetrics);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        t.writeTo(out);
+
+        assertEquals(expected, new String(out.toByteArray(), "UTF-8"));
+        assertEquals(stringMetrics.getChars(), byteMetrics.getChars());
+        assertEquals(stringMetrics.getCells(), byteMetrics.getCells());
+      }
+    }
+  }
+
+  public void testStreamingTable() throws IOException {
+    StringBuilder sb = new StringBuilder();
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ByteSink sink = new ByteSink(out);
+    StreamingTable st = new StreamingTable(sb, 3,
+        BorderStyle.UNICODE_ROUND_BOX);
+    StreamingTable bt = new StreamingTable(sink, 3,
+        BorderStyle.UNICODE_ROUND_BOX);
+    for (int c = 0; c < 3; c++) {
+      st.setColumnWidth(c, 6);
+      bt.setColumnWidth(c, 6);
+    }
+    for (int i = 0; i < 1000; i++) {
+      String[] row = { "r" + i, i % 3 == 0 ? "\u00F1and\u00FA" : "abc",
+          "" + (i * 31) };
+      st.addRow(row);
+      bt.addRow(row);
+    }
+    st.finishTable();
+    bt.finishTable();
+    sink.flush();
+    assertEquals(sb.toString(), new String(out.toByteArray(), "UTF-8"));
+  }
+
+  public void testOtherCharset() throws IOException {
+    Charset latin1 = Charset.forName("ISO-8859-1");
+    Table t = new Table(2, BorderStyle.UNICODE_BOX);
+    t.addRow("a\u00E9", "b");
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ByteSink sink = new ByteSink(out, latin1);
+    t.render(sink);
+    sink.flush();
+    String expected = new String(t.render().getBytes(latin1), latin1);
+    assertEquals(expected, new String(out.toByteArray(), latin1));
+  }
+
+}
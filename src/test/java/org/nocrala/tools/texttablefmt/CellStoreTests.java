@@ -0,0 +1,97 @@
+package org.nocrala.tools.texttablefmt;
+
+import junit.framework.TestCase;
+
+import org.nocrala.tools.texttablefmt.CellStyle.AbbreviationStyle;
+import org.nocrala.tools.texttablefmt.CellStyle.HorizontalAlign;
+import org.nocrala.tools.texttablefmt.CellStyle.NullStyle;
+
+public class CellStoreTests extends TestCase {
+
+  public CellStoreTests(final String txt) {
+    super(txt);
+  }
+
+  public void testCells() {
+    CellStore s = new CellStore(2);
+    CellStyle cs = new CellStyle(HorizontalAlign.right);
+    for (int i = 0; i < 100; i++) {
+      assertEquals(i, s.add("c" + i, cs, 1 + i % 3));
+    }
+    s.add("\u001B[33mabc\u001B[0m", cs, 300);
+    s.add(null, cs, 1);
+
+    assertEquals(102, s.size());
+    assertEquals("c42", s.getContent(42));
+    assertEquals(1, s.getColSpan(42));
+    assertEquals(3, s.getColSpan(41));
+    assertEquals(3, s.getWidth(42));
+    assertFalse(s.isFormatted(42));
+
+    assertEquals(300, s.getColSpan(100));
+    assertEquals(3, s.getWidth(100));
+    assertTrue(s.isFormatted(100));
+
+    assertNull(s.getContent(101));
+    assertEquals(0, s.getWidth(101));
+
+    StringBuilder sb = new StringBuilder();
+    s.render(42, sb, 5);
+    assertEquals("  c42", sb.toString());
+  }
+
+  public void testStyleInterning() {
+    CellStore s = new CellStore();
+    for (int i = 0; i < 1000; i++) {
+      s.add("abc", new CellStyle(), 1);
+      s.add("def", new CellStyle(HorizontalAlign.center,
+          AbbreviationStyle.crop, NullStyle.nullText), 1);
+    }
+    assertEquals(2, s.getTotalStyles());
+    assertEquals(HorizontalAlign.center, s.getStyle(1999).getHorizontalAlign());
+
+    CellStyle custom = new CellStyle() {
+    };
+    s.add("ghi", custom, 1);
+    s.add("jkl", new CellStyle(), 1);
+    assertEquals(3, s.getTotalStyles());
+    assertSame(custom, s.getStyle(2000));
+  }
+
+  public void testClear() {
+    CellStore s = new CellStore(2);
+    CellStyle cs = new CellStyle(HorizontalAlign.right);
+    s.add("abc", cs, 1);
+    s.add("def", cs, 300);
+    s.clear();
+    assertEquals(0, s.size());
+    assertEquals(0, s.add("ghij", cs, 2));
+    assertEquals(1, s.size());
+    assertEquals("ghij", s.getContent(0));
+    assertEquals(2, s.getColSpan(0));
+    assertEquals(4, s.getWidth(0));
+    assertEquals(1, s.getTotalStyles());
+  }
+
+  public void testTooManyStyles() {
+    CellStore s = new CellStore();
+    CellStyle[] styles = new CellStyle[70000];
+    for (int i = 0; i < styles.length; i++) {
+      styles[i] = new CellStyle() {
+      };
+      s.add("c" + i, styles[i], 1);
+    }
+    s.add("plain", CellStyle.DEFAULT, 1);
+    for (int i = 0; i < styles.length; i++) {
+      assertSame(styles[i], s.getStyle(i));
+    }
+    assertSame(CellStyle.DEFAULT, s.getStyle(styles.length));
+
+    s.clear();
+    assertEquals(0, s.getTotalStyles());
+    s.add("abc", styles[69999], 1);
+    assertEquals(1, s.getTotalStyles());
+    assertSame(styles[69999], s.getStyle(0));
+  }
+
+}
@@ -167,4 +167,135 @@ public class CellTests extends TestCase {
 
   }
 
+  public void testBracketsWithoutTerminalFormats() {
+    CellStyle cs = new CellStyle(HorizontalAlign.left, AbbreviationStyle.crop);
+    Cell c = new Cell("[abc]", cs, 1);
+    assertEquals("[abc] ", c.render(6));
+    assertEquals("[ab", c.render(3));
+  }
+
+  public void testTerminalFormatsNotHandled() {
+    CellStyle cs = new CellStyle(HorizontalAlign.left, AbbreviationStyle.crop,
+        NullStyle.emptyString, false);
+    char esc = 27;
+    Cell c = new Cell(esc + "[1mab", cs, 1);
+    assertEquals(6, cs.getWidth(esc + "[1mab"));
+    assertEquals(esc + "[1mab ", c.render(7));
+  }
+
+  public void testWideCharacters() {
+    CellStyle cs = new CellStyle(HorizontalAlign.left, AbbreviationStyle.crop,
+        NullStyle.emptyString);
+    String txt = "\u65e5\u672cx"; // two ideographs and a latin letter
+    assertEquals(5, cs.getWidth(txt));
+    Cell c = new Cell(txt, cs, 1);
+    assertEquals(txt + "  ", c.render(7));
+    assertEquals(txt, c.render(5));
+    assertEquals("\u65e5\u672c", c.render(4));
+    assertEquals("\u65e5 ", c.render(3));
+    assertEquals("\u65e5", c.render(2));
+    assertEquals(" ", c.render(1));
+
+    CellStyle csr = new CellStyle(HorizontalAlign.right,
+        AbbreviationStyle.dots, NullStyle.emptyString);
+    Cell d = new Cell(txt, csr, 1);
+    assertEquals("  " + txt, d.render(7));
+    assertEquals(" " + txt, d.render(6));
+    assertEquals(" ...", d.render(4));
+  }
+
+  public void testZeroWidthAndSurrogates() {
+    CellStyle cs = new CellStyle(HorizontalAlign.left, AbbreviationStyle.crop,
+        NullStyle.emptyString);
+    String combined = "e\u0301a"; // e + combining acute accent
+    assertEquals(2, cs.getWidth(combined));
+    assertEquals("e\u0301", new Cell(combined, cs, 1).render(1));
+    String emoji = "\ud83d\ude00"; // U+1F600, wide
+    assertEquals(2, cs.getWidth(emoji));
+    String gothic = "\ud800\udf30"; // U+10330, narrow
+    assertEquals(1, cs.getWidth(gothic));
+    assertEquals(gothic + " ", new Cell(gothic, cs, 1).render(2));
+  }
+
+  public void testCharsDisplayWidth() {
+    CellStyle cs = new CellStyle(HorizontalAlign.left, AbbreviationStyle.crop,
+        NullStyle.emptyString, true, DisplayWidth.CHARS);
+    assertEquals(3, cs.getWidth("\u65e5\u672cx"));
+    assertEquals(2, cs.getWidth("\ud800\udf30"));
+    assertEquals("\u65e5\u672c", new Cell("\u65e5\u672cx", cs, 1).render(2));
+  }
+
+  public void testWideCharactersInTable() {
+    Table t = new Table(2, BorderStyle.CLASSIC, ShownBorders.ALL, false, "");
+    t.addCell("\u4e2d\u6587");
+    t.addCell("ab");
+    t.addCell("abc");
+    t.addCell("\uc548\ub155");
+    assertEquals("" //
+        + "+----+----+\n" //
+        + "|\u4e2d\u6587|ab  |\n" //
+        + "+----+----+\n" //
+        + "|abc |\uc548\ub155|\n" //
+        + "+----+----+", t.render());
+  }
+
+  public void testSharedStyles() {
+    CellStyle cs = CellStyle.valueOf(HorizontalAlign.right,
+        AbbreviationStyle.crop, NullStyle.nullText, false);
+    assertSame(cs, CellStyle.valueOf(HorizontalAlign.right,
+        AbbreviationStyle.crop, NullStyle.nullText, false));
+    assertEquals(HorizontalAlign.right, cs.getHorizontalAlign());
+    assertEquals(AbbreviationStyle.crop, cs.getAbbreviationStyle());
+    assertEquals(NullStyle.nullText, cs.getNullStyle());
+    assertFalse(cs.isHandleTerminalFormats());
+    assertEquals("  <null>", cs.render(null, 8));
+
+    assertSame(CellStyle.DEFAULT, CellStyle.valueOf(HorizontalAlign.left,
+        AbbreviationStyle.dots, NullStyle.emptyString));
+    assertEquals("ab...", CellStyle.DEFAULT.render("abcdefgh", 5));
+  }
+
+  public void testWrapWidth() {
+    CellStyle cs = CellStyle.valueOf(HorizontalAlign.left,
+        AbbreviationStyle.wrap, NullStyle.emptyString);
+    assertEquals(11, cs.getWidth("abc\nlonger line\r\nde"));
+    assertEquals(0, cs.getWidth("\n"));
+    assertEquals("abc...", cs.render("abcdefgh", 6));
+  }
+
+  public void testWidthMeasuredOnce() {
+    final int[] measured = new int[1];
+    CellStyle cs = new CellStyle(HorizontalAlign.left, AbbreviationStyle.crop,
+        NullStyle.emptyString) {
+      long measure(final String txt) {
+        measured[0]++;
+        return super.measure(txt);
+      }
+    };
+    Cell c = new Cell("abc", cs, 1);
+    assertEquals(1, measured[0]);
+    assertEquals(3, c.getWidth());
+    assertEquals("abc  ", c.render(5));
+    StringBuilder sb = new StringBuilder();
+    c.render(sb, 2);
+    assertEquals("ab", sb.toString());
+    assertEquals(1, measured[0]);
+
+    // New content is measured again
+    c = new Cell("abcdef", cs, 1);
+    assertEquals(2, measured[0]);
+    assertEquals(6, c.getWidth());
+
+    Table t = new Table(1, BorderStyle.CLASSIC, ShownBorders.NONE, false, "");
+    t.addCell("ab", cs);
+    assertEquals(3, measured[0]);
+    assertEquals("ab", t.render());
+    assertEquals("ab", t.render());
+    assertEquals(3, measured[0]);
+    t.addCell("abcd", cs);
+    assertEquals(4, measured[0]);
+    assertEquals("ab  \nabcd", t.render());
+    assertEquals(4, measured[0]);
+  }
+
 }
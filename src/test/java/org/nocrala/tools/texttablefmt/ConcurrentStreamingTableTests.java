@@ -0,0 +1,236 @@
+package org.nocrala.tools.texttablefmt;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+public class ConcurrentStreamingTableTests extends TestCase {
+
+  private static final int PRODUCERS = 8;
+
+  private static final int ROWS_PER_PRODUCER = 500;
+
+  public ConcurrentStreamingTableTests(final String txt) {
+    super(txt);
+  }
+
+  public void testEmpty() throws IOException {
+    StringBuffer sb = new StringBuffer();
+    StreamingTable st = new StreamingTable(sb, 2, BorderStyle.CLASSIC,
+        ShownBorders.ALL, false, "");
+    new ConcurrentStreamingTable(st).finishTable();
+    assertEquals("", sb.toString());
+  }
+
+  public void testUnordered() throws Exception {
+    StringBuilder sb = new StringBuilder();
+    StreamingTable st = new StreamingTable(sb, 2, BorderStyle.CLASSIC,
+        ShownBorders.NONE, false, "");
+    final ConcurrentStreamingTable t = new ConcurrentStreamingTable(st);
+    Thread[] producers = new Thread[PRODUCERS];
+    for (int p = 0; p < PRODUCERS; p++) {
+      final int producer = p;
+      producers[p] = new Thread() {
+        public void run() {
+          for (int i = 0; i < ROWS_PER_PRODUCER; i++) {
+            t.addRow(new String[] { "" + producer, "" + i });
+          }
+        }
+      };
+      producers[p].start();
+    }
+    for (Thread producer : producers) {
+      producer.join();
+    }
+    t.finishTable();
+
+    String[] lines = sb.toString().split("\n");
+    assertEquals(PRODUCERS * ROWS_PER_PRODUCER, lines.length);
+    Arrays.sort(lines);
+    String[] expected = new String[lines.length];
+    int n = 0;
+    for (int p = 0; p < PRODUCERS; p++) {
+      for (int i = 0; i < ROWS_PER_PRODUCER; i++) {
+        expected[n++] = pad("" + p) + pad("" + i);
+      }
+    }
+    Arrays.sort(expected);
+    assertTrue(Arrays.equals(expected, lines));
+  }
+
+  public void testOrdered() throws Exception {
+    StringBuilder expected = new StringBuilder();
+    StreamingTable single = new StreamingTable(expected, 2,
+        BorderStyle.CLASSIC, ShownBorders.ALL, false, "");
+    for (int i = 0; i < PRODUCERS * ROWS_PER_PRODUCER; i++) {
+      single.addCell("r" + i);
+      single.addCell(null);
+    }
+    single.finishTable();
+
+    StringBuilder sb = new StringBuilder();
+    StreamingTable st = new StreamingTable(sb, 2, BorderStyle.CLASSIC,
+        ShownBorders.ALL, false, "");
+    final ConcurrentStreamingTable t = new ConcurrentStreamingTable(st, true);
+    Thread[] producers = new Thread[PRODUCERS];
+    for (int p = 0; p < PRODUCERS; p++) {
+      final int producer = p;
+      producers[p] = new Thread() {
+        public void run() {
+          // each producer adds every PRODUCERS-th row, swapping each pair
+          for (int i = 0; i < ROWS_PER_PRODUCER; i = i + 2) {
+            int seq = i * PRODUCERS + producer;
+            t.addRow(seq + PRODUCERS, new String[] { "r" + (seq + PRODUCERS) });
+            t.addRow(seq, new String[] { "r" + seq });
+          }
+        }
+      };
+      producers[p].start();
+    }
+    for (Thread producer : producers) {
+      producer.join();
+    }
+    t.finishTable();
+    assertEquals(expected.toString(), sb.toString());
+  }
+
+  public void testInvalidRows() throws IOException {
+    StreamingTable st = new StreamingTable(new StringBuilder(), 2);
+    ConcurrentStreamingTable t = new ConcurrentStreamingTable(st, true);
+    try {
+      t.addRow(new String[] { "a", "b" });
+      fail();
+    } catch (IllegalStateException e) {
+      // expected
+    }
+    try {
+      t.addRow(0, new String[] { "a", "b", "c" });
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    t.addRow(0, new String[] { "a", "b" });
+    t.addRow(0, new String[] { "c", "d" });
+    try {
+      t.finishTable();
+      fail();
+    } catch (IllegalStateException e) {
+      // expected: duplicated sequence number
+    }
+  }
+
+  public void testBoundedQueue() throws Exception {
+    final CountDownLatch release = new CountDownLatch(1);
+    final StringBuilder sb = new StringBuilder();
+    Appendable slow = new Appendable() {
+      public Appendable append(final CharSequence csq) throws IOException {
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          throw new IOException(e);
+        }
+        sb.append(csq);
+        return this;
+      }
+
+      public Appendable append(final CharSequence csq, final int start,
+          final int end) throws IOException {
+        return append(csq.subSequence(start, end));
+      }
+
+      public Appendable append(final char c) throws IOException {
+        return append(String.valueOf(c));
+      }
+    };
+    StreamingTable st = new StreamingTable(slow, 1, BorderStyle.CLASSIC,
+        ShownBorders.NONE, false, "");
+    // Rows wide enough to fill the batch every two rows.
+    st.setColumnWidth(0, 40000);
+    final ConcurrentStreamingTable t = new ConcurrentStreamingTable(st, false,
+        2);
+    final AtomicInteger added = new AtomicInteger();
+    Thread producer = new Thread() {
+      public void run() {
+        for (int i = 0; i < 10; i++) {
+          t.addRow(new String[] { "r" + i });
+          added.incrementAndGet();
+        }
+      }
+    };
+    producer.start();
+    producer.join(200);
+    // The renderer blocks writing the batch after taking at most three rows,
+    // and the producer after queuing two more.
+    assertTrue(added.get() <= 5);
+    release.countDown();
+    producer.join();
+    t.finishTable();
+    assertEquals(10, sb.toString().split("\n").length);
+  }
+
+  public void testOrderedCapacity() throws Exception {
+    StringBuilder sb = new StringBuilder();
+    StreamingTable st = new StreamingTable(sb, 1, BorderStyle.CLASSIC,
+        ShownBorders.NONE, false, "");
+    final ConcurrentStreamingTable t = new ConcurrentStreamingTable(st, true,
+        4);
+    Thread producer = new Thread() {
+      public void run() {
+        t.addRow(10, new String[] { "r10" });
+      }
+    };
+    producer.start();
+    producer.join(200);
+    // Too far ahead of the next row to render, row 0.
+    assertTrue(producer.isAlive());
+    for (int i = 0; i < 10; i++) {
+      t.addRow(i, new String[] { "r" + i });
+    }
+    producer.join();
+    t.finishTable();
+    String[] lines = sb.toString().split("\n");
+    assertEquals(11, lines.length);
+    assertEquals(pad("r10"), lines[10]);
+  }
+
+  public void testFailure() throws Exception {
+    Appendable broken = new Appendable() {
+      public Appendable append(final CharSequence csq) throws IOException {
+        throw new IOException("broken");
+      }
+
+      public Appendable append(final CharSequence csq, final int start,
+          final int end) throws IOException {
+        throw new IOException("broken");
+      }
+
+      public Appendable append(final char c) throws IOException {
+        throw new IOException("broken");
+      }
+    };
+    StreamingTable st = new StreamingTable(broken, 1);
+    ConcurrentStreamingTable t = new ConcurrentStreamingTable(st, false, 2);
+    try {
+      for (int i = 0; i < 100000; i++) {
+        t.addRow(new String[] { "r" + i });
+      }
+      fail("Adding rows must fail once the rendering failed.");
+    } catch (IllegalStateException e) {
+      assertEquals("broken", e.getCause().getMessage());
+    }
+    try {
+      t.finishTable();
+      fail();
+    } catch (IOException e) {
+      assertEquals("broken", e.getMessage());
+    }
+  }
+
+  private static String pad(final String txt) {
+    return (txt + "          ").substring(0, 10);
+  }
+
+}
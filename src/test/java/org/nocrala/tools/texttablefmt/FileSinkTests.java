@@ -0,0 +1,121 @@
+package org.nocrala.tools.texttablefmt;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+
+import junit.framework.TestCase;
+
+public class FileSinkTests extends TestCase {
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private File file;
+
+  public FileSinkTests(final String txt) {
+    super(txt);
+  }
+
+  protected void setUp() throws IOException {
+    this.file = File.createTempFile("texttablefmt", ".txt");
+  }
+
+  protected void tearDown() {
+    this.file.delete();
+  }
+
+  public void testAscii() throws IOException {
+    FileSink sink = new FileSink(this.file);
+    sink.append("abc").append('d').append("xefghx", 1, 5);
+    sink.close();
+    assertEquals("abcdefgh", read(UTF_8));
+    assertEquals(8, sink.getBytesWritten());
+  }
+
+  public void testNonAscii() throws IOException {
+    FileSink sink = new FileSink(this.file);
+    sink.append("a\u00E9b\u2500\u2500c");
+    // Surrogate pair split across two appends
+    sink.append("x\uD83D");
+    sink.append("\uDE00y");
+    sink.close();
+    assertEquals("a\u00E9b\u2500\u2500cx\uD83D\uDE00y", read(UTF_8));
+  }
+
+  public void testOtherCharset() throws IOException {
+    Charset utf16 = Charset.forName("UTF-16BE");
+    FileSink sink = new FileSink(this.file, utf16);
+    sink.append("ab\u2500\uD83D");
+    sink.append("\uDE00c");
+    sink.close();
+    assertEquals("ab\u2500\uD83D\uDE00c", read(utf16));
+  }
+
+  public void testSmallChunks() throws IOException {
+    FileSink sink = new FileSink(
+        new RandomAccessFile(this.file, "rw").getChannel(), UTF_8, 16);
+    StringBuilder expected = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      String txt = "row " + i + " \u2502\u00E9\u2502\n";
+      sink.append(txt);
+      expected.append(txt);
+    }
+    sink.flush();
+    assertEquals(sink.getBytesWritten(), this.file.length());
+    sink.close();
+    assertEquals(expected.toString(), read(UTF_8));
+  }
+
+  public void testStreamingTable() throws IOException {
+    FileSink sink = new FileSink(this.file);
+    StringBuilder sb = new StringBuilder();
+    StreamingTable ft = new StreamingTable(sink, 3,
+        BorderStyle.UNICODE_BOX_DOUBLE_BORDER);
+    StreamingTable st = new StreamingTable(sb, 3,
+        BorderStyle.UNICODE_BOX_DOUBLE_BORDER);
+    for (int c = 0; c < 3; c++) {
+      ft.setColumnWidth(c, 10);
+      st.setColumnWidth(c, 10);
+    }
+    for (int i = 0; i < 20000; i++) {
+      String[] row = { "name" + i, "\u00E1rbol " + i, "" + (i * 7) };
+      ft.addRow(row);
+      st.addRow(row);
+    }
+    ft.finishTable();
+    st.finishTable();
+    sink.close();
+    assertEquals(sb.toString(), read(UTF_8));
+  }
+
+  public void testClosed() throws IOException {
+    FileSink sink = new FileSink(this.file);
+    sink.close();
+    sink.close();
+    try {
+      sink.append("a");
+      fail();
+    } catch (IOException e) {
+      // OK
+    }
+  }
+
+  private String read(final Charset charset) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    FileInputStream in = new FileInputStream(this.file);
+    try {
+      byte[] buffer = new byte[8192];
+      int n;
+      while ((n = in.read(buffer)) != -1) {
+        out.write(buffer, 0, n);
+      }
+    } finally {
+      in.close();
+    }
+    return new String(out.toByteArray(), charset.name());
+  }
+
+}
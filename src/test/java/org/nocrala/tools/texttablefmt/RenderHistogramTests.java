@@ -0,0 +1,86 @@
+package org.nocrala.tools.texttablefmt;
+
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+public class RenderHistogramTests extends TestCase {
+
+  public RenderHistogramTests(final String txt) {
+    super(txt);
+  }
+
+  public void testTable() {
+    RenderHistogram h = new RenderHistogram();
+    Table t = new Table(2, BorderStyle.CLASSIC, ShownBorders.ALL, true, "");
+    t.setRenderListener(h);
+    t.setColumnWidth(0, 0, 3);
+    t.addCell("abcdef");
+    t.addCell("<g>");
+    t.addCell("\u001B[33mhi\u001B[0m");
+    t.addCell("jk");
+    t.addCell("l", 2);
+    String rendered = t.render();
+
+    assertEquals(3, h.getRows());
+    assertEquals(5, h.getCells());
+    assertEquals(1, h.getAbbreviatedCells());
+    assertEquals(1, h.getFormattedCells());
+    assertEquals(rendered.length(), h.getChars());
+    assertEquals(1, h.getLayouts());
+    assertEquals(3, sum(h.getRowTimeHistogram()));
+    assertEquals(1, sum(h.getLayoutTimeHistogram()));
+
+    // Nothing changed, so no new layout
+    h.reset();
+    String[] lines = t.renderAsStringArray();
+    assertEquals(0, h.getLayouts());
+    assertEquals(3, h.getRows());
+    int chars = 0;
+    for (String line : lines) {
+      chars = chars + line.length();
+    }
+    assertEquals(chars, h.getChars());
+  }
+
+  public void testStreamingTable() throws IOException {
+    RenderHistogram h = new RenderHistogram();
+    StringBuilder sb = new StringBuilder();
+    StreamingTable t = new StreamingTable(sb, 2, BorderStyle.CLASSIC,
+        ShownBorders.ALL, false, "");
+    t.setRenderListener(h);
+    t.addRow("a", "b");
+    t.addRow("c");
+    t.finishTable();
+    assertEquals(2, h.getRows());
+    assertEquals(4, h.getCells());
+    assertEquals(sb.length(), h.getChars());
+    assertEquals(0, h.getLayouts());
+  }
+
+  public void testPercentile() {
+    RenderHistogram h = new RenderHistogram();
+    assertEquals(0, h.getRowTimePercentile(0.5));
+    for (int i = 0; i < 98; i++) {
+      h.rowRendered(1, 0, 0, 10, 100);
+    }
+    h.rowRendered(1, 0, 0, 10, 0);
+    h.rowRendered(1, 0, 0, 10, 5000);
+    assertEquals(1, h.getRowTimeHistogram()[0]);
+    assertEquals(98, h.getRowTimeHistogram()[7]);
+    assertEquals(1, h.getRowTimeHistogram()[13]);
+    assertEquals(1, h.getRowTimePercentile(0.01));
+    assertEquals(128, h.getRowTimePercentile(0.5));
+    assertEquals(128, h.getRowTimePercentile(0.99));
+    assertEquals(8192, h.getRowTimePercentile(1.0));
+  }
+
+  private static long sum(final long[] values) {
+    long total = 0;
+    for (long value : values) {
+      total = total + value;
+    }
+    return total;
+  }
+
+}
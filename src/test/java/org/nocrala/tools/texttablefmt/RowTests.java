@@ -35,4 +35,19 @@ public class RowTests extends TestCase {
 
   }
 
+  public void testSpannedPositions() {
+    CellStyle cs = new CellStyle(HorizontalAlign.left, AbbreviationStyle.crop,
+        NullStyle.emptyString);
+    Row r = new Row();
+    r.addCell("abc", cs, 1);
+    r.addCell("def", cs, 1);
+    assertTrue(r.getSpannedPositions().isEmpty());
+
+    r.addCell("ghi", cs, 3);
+    assertEquals(2, r.getSpannedPositions().cardinality());
+    assertEquals(false, r.hasSeparator(3));
+    assertEquals(false, r.hasSeparator(4));
+    assertEquals(true, r.hasSeparator(5));
+  }
+
 }
@@ -0,0 +1,136 @@
+package org.nocrala.tools.texttablefmt;
+
+import java.io.File;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+import org.nocrala.tools.texttablefmt.CellStyle.AbbreviationStyle;
+import org.nocrala.tools.texttablefmt.CellStyle.HorizontalAlign;
+import org.nocrala.tools.texttablefmt.CellStyle.NullStyle;
+
+public class SpillingTableTests extends TestCase {
+
+  public SpillingTableTests(final String txt) {
+    super(txt);
+  }
+
+  public void testEmpty() throws IOException {
+    StringBuffer sb = new StringBuffer();
+    SpillingTable t = new SpillingTable(sb, 10, BorderStyle.CLASSIC,
+        ShownBorders.ALL, false, "");
+    t.finishTable();
+    assertEquals("", sb.toString());
+  }
+
+  public void testAutomaticWidth() throws IOException {
+    CellStyle cs = new CellStyle(HorizontalAlign.left, AbbreviationStyle.crop,
+        NullStyle.emptyString);
+    StringBuffer sb = new StringBuffer();
+    SpillingTable t = new SpillingTable(sb, 2, BorderStyle.CLASSIC,
+        ShownBorders.ALL, false, "");
+    t.addCell("abcdef", cs);
+    t.addCell("123456", cs);
+    t.addCell("mno", cs);
+    t.addCell("45689", cs);
+    t.addCell("xyztuvw", cs);
+    t.addCell("01234567", cs);
+    t.finishTable();
+    assertEquals("" //
+        + "+-------+--------+\n" //
+        + "|abcdef |123456  |\n" //
+        + "+-------+--------+\n" //
+        + "|mno    |45689   |\n" //
+        + "+-------+--------+\n" //
+        + "|xyztuvw|01234567|\n" //
+        + "+-------+--------+", sb.toString());
+  }
+
+  public void testSameAsTable() throws IOException {
+    CellStyle cs = new CellStyle(HorizontalAlign.left, AbbreviationStyle.crop,
+        NullStyle.emptyString);
+    CellStyle csr = new CellStyle(HorizontalAlign.right,
+        AbbreviationStyle.dots, NullStyle.nullText);
+    CellStyle csc = new CellStyle(HorizontalAlign.center,
+        AbbreviationStyle.crop, NullStyle.emptyString, false);
+    StringBuffer sb = new StringBuffer();
+    SpillingTable st = new SpillingTable(sb, 4, BorderStyle.UNICODE_BOX,
+        ShownBorders.ALL, false, "> ");
+    Table t = new Table(4, BorderStyle.UNICODE_BOX, ShownBorders.ALL, false,
+        "> ");
+    st.setColumnWidth(1, 2, 5);
+    t.setColumnWidth(1, 2, 5);
+    for (int i = 0; i < 2000; i++) {
+      String content = i % 7 == 0 ? null : "cell\u00e9 " + i * 13;
+      CellStyle style = i % 3 == 0 ? cs : (i % 3 == 1 ? csr : csc);
+      int colSpan = i % 11 == 0 ? 3 : 1;
+      st.addCell(content, style, colSpan);
+      t.addCell(content, style, colSpan);
+    }
+    st.addCell("a very long header spanning everything", cs, 4);
+    t.addCell("a very long header spanning everything", cs, 4);
+    st.finishTable();
+    assertEquals(t.render(), sb.toString());
+  }
+
+  public void testWrap() throws IOException {
+    StringBuffer sb = new StringBuffer();
+    SpillingTable st = new SpillingTable(sb, 3, BorderStyle.CLASSIC,
+        ShownBorders.ALL, false, "");
+    Table t = new Table(3, BorderStyle.CLASSIC, ShownBorders.ALL, false, "");
+    for (int i = 0; i < 3; i++) {
+      st.setColumnWidth(i, 0, 7);
+      t.setColumnWidth(i, 0, 7);
+    }
+    for (HorizontalAlign horAlign : HorizontalAlign.values()) {
+      CellStyle cs = CellStyle.valueOf(horAlign, AbbreviationStyle.wrap,
+          NullStyle.nullText);
+      st.addCell(horAlign + " aligned wrapped text", cs);
+      t.addCell(horAlign + " aligned wrapped text", cs);
+      st.addCell(null, cs);
+      t.addCell(null, cs);
+      st.addCell("short", cs);
+      t.addCell("short", cs);
+    }
+    st.finishTable();
+    assertEquals("" //
+        + "+-------+------+-----+\n" //
+        + "|left   |<null>|short|\n" //
+        + "|aligned|      |     |\n" //
+        + "|wrapped|      |     |\n" //
+        + "|text   |      |     |\n" //
+        + "+-------+------+-----+\n" //
+        + "|center |<null>|short|\n" //
+        + "|aligned|      |     |\n" //
+        + "|wrapped|      |     |\n" //
+        + "| text  |      |     |\n" //
+        + "+-------+------+-----+\n" //
+        + "|  right|<null>|short|\n" //
+        + "|aligned|      |     |\n" //
+        + "|wrapped|      |     |\n" //
+        + "|   text|      |     |\n" //
+        + "+-------+------+-----+", sb.toString());
+    assertEquals(t.render(), sb.toString());
+  }
+
+  public void testClose() throws IOException {
+    StringBuffer sb = new StringBuffer();
+    SpillingTable t = new SpillingTable(sb, 2);
+    t.addCell("abc");
+    t.addCell("def");
+    File spillFile = t.spillFile;
+    assertTrue(spillFile.exists());
+    t.close();
+    assertFalse(spillFile.exists());
+    t.close();
+    try {
+      t.addCell("ghi");
+      fail("Cells can't be added to a closed table.");
+    } catch (IOException e) {
+      // OK
+    }
+    t.finishTable();
+    assertEquals("", sb.toString());
+  }
+
+}
@@ -1,6 +1,7 @@
 package org.nocrala.tools.texttablefmt;
 
 import java.io.IOException;
+import java.util.Arrays;
 
 import junit.framework.TestCase;
 
@@ -144,4 +145,97 @@ public class StreamingTableTests extends TestCase {
         + "+------+-------+", sb.toString());
   }
 
+  public void testColSpanSeparators() throws IOException {
+    CellStyle cs = new CellStyle(HorizontalAlign.left, AbbreviationStyle.crop,
+        NullStyle.emptyString);
+    StringBuffer sb = new StringBuffer();
+    StreamingTable t = new StreamingTable(sb, 3, BorderStyle.CLASSIC,
+        ShownBorders.ALL, false, "");
+    t.setColumnWidth(0, 2);
+    t.setColumnWidth(1, 2);
+    t.setColumnWidth(2, 2);
+    t.addCell("a", cs);
+    t.addCell("b", cs);
+    t.addCell("c", cs);
+    t.addCell("de", cs, 2);
+    t.addCell("f", cs);
+    t.addCell("g", cs);
+    t.addCell("h", cs);
+    t.addCell("i", cs);
+    t.addCell("j", cs);
+    t.addCell("k", cs, 2);
+    t.finishTable();
+    assertEquals("" //
+        + "+--+--+--+\n" //
+        + "|a |b |c |\n" //
+        + "+-----+--+\n" //
+        + "|de   |f |\n" //
+        + "+-----+--+\n" //
+        + "|g |h |i |\n" //
+        + "+--+-----+\n" //
+        + "|j |k    |\n" //
+        + "+--+-----+", sb.toString());
+  }
+
+  public void testAddRows() throws IOException {
+    StringBuilder expected = new StringBuilder();
+    StreamingTable e = new StreamingTable(expected, 3, BorderStyle.CLASSIC,
+        ShownBorders.ALL, false, "");
+    String[] contents = { "a", "bc", null, "def", "g", "hi", "jk", null,
+        null, "lmn", null, null, "o", "p", "q", "r", "s", "t" };
+    for (String content : contents) {
+      e.addCell(content);
+    }
+    e.finishTable();
+
+    StringBuilder sb = new StringBuilder();
+    StreamingTable t = new StreamingTable(sb, 3, BorderStyle.CLASSIC,
+        ShownBorders.ALL, false, "");
+    t.addRow("a", "bc");
+    t.addRows(Arrays.asList(new String[][] { { "def", "g", "hi" },
+        { "jk" } }));
+    t.addCell("lmn");
+    t.addColumnarBatch(new String[][] { { "o", "r" }, { "p", "s" },
+        { "q", "t" } });
+    t.finishTable();
+    assertEquals(expected.toString(), sb.toString());
+  }
+
+  public void testLookahead() throws IOException {
+    StringBuilder sb = new StringBuilder();
+    StreamingTable t = new StreamingTable(sb, 3, BorderStyle.CLASSIC,
+        ShownBorders.ALL, false, "");
+    t.setLookahead(2, 0);
+    t.setColumnWidth(2, 4, 6);
+    t.addRow("abc", "d", "e");
+    t.addRow("fg", "hijk", "lmnopqrs");
+    t.addRow("tuvwxyz", "1", "2");
+    t.addCell("x");
+    t.finishTable();
+    assertEquals("" //
+        + "+---+----+------+\n" //
+        + "|abc|d   |e     |\n" //
+        + "+---+----+------+\n" //
+        + "|fg |hijk|lmn...|\n" //
+        + "+---+----+------+\n" //
+        + "|...|1   |2     |\n" //
+        + "+---+----+------+\n" //
+        + "|x  |    |      |\n" //
+        + "+---+----+------+", sb.toString());
+
+    sb.setLength(0);
+    t = new StreamingTable(sb, 2, BorderStyle.CLASSIC, ShownBorders.ALL,
+        false, "");
+    t.setLookahead(10, 0);
+    t.addCell("spanning both", 2);
+    t.addRow("a", "b");
+    t.finishTable();
+    assertEquals("" //
+        + "+-------------+\n" //
+        + "|spanning both|\n" //
+        + "+-------------+\n" //
+        + "|a     |b     |\n" //
+        + "+------+------+", sb.toString());
+  }
+
 }
@@ -141,4 +141,45 @@ public class TableColSpanTests extends TestCase {
         + "+----+", t.render());
   }
 
+  public void testDistributedColSpan() {
+    Table t = new Table(4, BorderStyle.CLASSIC, ShownBorders.ALL, false, "");
+    t.addCell("a very long report title here", 4);
+    t.addCell("Sales 2024", 2);
+    t.addCell("Costs", 2);
+    t.addRow("q1", "q2", "q3", "q4");
+    assertEquals("" //
+        + "+-----------------------------+\n" //
+        + "|a very long report title here|\n" //
+        + "+-----------------------------+\n" //
+        + "|Sales 2024      |Costs       |\n" //
+        + "+----------------+------------+\n" //
+        + "|q1     |q2      |q3   |q4    |\n" //
+        + "+-------+--------+-----+------+", t.render());
+
+    t.setColumnWeight(0, 0);
+    t.setColumnWeight(1, 3);
+    assertEquals("" //
+        + "+-----------------------------+\n" //
+        + "|a very long report title here|\n" //
+        + "+-----------------------------+\n" //
+        + "|Sales 2024        |Costs     |\n" //
+        + "+------------------+----------+\n" //
+        + "|q1|q2             |q3  |q4   |\n" //
+        + "+--+---------------+----+-----+", t.render());
+  }
+
+  public void testColSpanLimitedByLastColumn() {
+    Table t = new Table(3, BorderStyle.CLASSIC, ShownBorders.ALL, false, "");
+    t.setColumnWidth(0, 0, 30);
+    t.setColumnWidth(2, 0, 8);
+    t.addCell("a very long spanning title", 3);
+    t.addRow("ab", "cd", "ef");
+    assertEquals("" //
+        + "+--------+\n" //
+        + "|a ver...|\n" //
+        + "+--------+\n" //
+        + "|ab|cd|ef|\n" //
+        + "+--+--+--+", t.render());
+  }
+
 }
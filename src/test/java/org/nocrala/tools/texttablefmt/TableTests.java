@@ -1,5 +1,11 @@
 package org.nocrala.tools.texttablefmt;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
 import junit.framework.TestCase;
 
 import org.nocrala.tools.texttablefmt.CellStyle.AbbreviationStyle;
@@ -179,4 +185,327 @@ public class TableTests extends TestCase {
         + "+------+------+", t.render());
   }
 
+  public void testRenderToAppendable() throws IOException {
+    CellStyle cs = new CellStyle(HorizontalAlign.left, AbbreviationStyle.crop,
+        NullStyle.emptyString);
+    Table t = new Table(2, BorderStyle.CLASSIC, ShownBorders.ALL, false, "");
+    t.addCell("abcdef", cs);
+    t.addCell("123456", cs);
+    t.addCell("mno", cs, 2);
+    t.addCell("xyztuvw", cs);
+    StringBuilder sb = new StringBuilder();
+    t.render(sb);
+    String expected = "" //
+        + "+-------+------+\n" //
+        + "|abcdef |123456|\n" //
+        + "+--------------+\n" //
+        + "|mno           |\n" //
+        + "+--------------+\n" //
+        + "|xyztuvw|      |\n" //
+        + "+-------+------+";
+    assertEquals(expected, sb.toString());
+
+    StringWriter w = new StringWriter();
+    t.writeTo(w);
+    assertEquals(expected, w.toString());
+  }
+
+  public void testRenderEmptyToAppendable() throws IOException {
+    Table t = new Table(3, BorderStyle.CLASSIC, ShownBorders.ALL, false, "");
+    StringBuilder sb = new StringBuilder();
+    t.render(sb);
+    assertEquals("", sb.toString());
+  }
+
+  public void testEscapeXml() {
+    CellStyle cs = new CellStyle(HorizontalAlign.left, AbbreviationStyle.crop,
+        NullStyle.emptyString);
+    Table t = new Table(2, BorderStyle.CLASSIC, ShownBorders.ALL, true, ">");
+    t.addCell("a<b", cs);
+    t.addCell("&", cs);
+    assertEquals("" //
+        + "&#62;+---+-+\n" //
+        + "&#62;|a&#60;b|&#38;|\n" //
+        + "&#62;+---+-+", t.render());
+    String[] lines = t.renderAsStringArray();
+    assertEquals(3, lines.length);
+    assertEquals("&#62;|a&#60;b|&#38;|", lines[1]);
+  }
+
+  public void testRenderAgain() {
+    CellStyle cs = new CellStyle(HorizontalAlign.left, AbbreviationStyle.crop,
+        NullStyle.emptyString);
+    Table t = new Table(2, BorderStyle.CLASSIC, ShownBorders.ALL, false, "");
+    t.addCell("abc", cs);
+    t.addCell("de", cs);
+    String first = t.render();
+    assertEquals(first, t.render());
+
+    t.addCell("f", cs);
+    t.addCell("g", cs);
+    assertEquals("" //
+        + "+---+--+\n" //
+        + "|abc|de|\n" //
+        + "+---+--+\n" //
+        + "|f  |g |\n" //
+        + "+---+--+", t.render());
+
+    t.addCell("hijk", cs, 2);
+    t.setColumnWidth(1, 4, 10);
+    assertEquals("" //
+        + "+---+----+\n" //
+        + "|abc|de  |\n" //
+        + "+---+----+\n" //
+        + "|f  |g   |\n" //
+        + "+--------+\n" //
+        + "|hijk    |\n" //
+        + "+--------+", t.render());
+  }
+
+  public void testParallelRender() throws IOException {
+    CellStyle cs = new CellStyle(HorizontalAlign.right);
+    ShownBorders[] shownBorders = { ShownBorders.ALL,
+        ShownBorders.SURROUND_HEADER_FOOTER_AND_COLUMNS };
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      for (ShownBorders sb : shownBorders) {
+        Table t = new Table(4, BorderStyle.CLASSIC, sb, true, ">");
+        for (int i = 0; i < 5000; i++) {
+          if (i % 7 == 3) {
+            t.addCell("<" + i + ">", cs, 2);
+            t.addCell("" + i, cs, 2);
+          } else {
+            for (int j = 0; j < 4; j++) {
+              t.addCell("" + (i * j), cs);
+            }
+          }
+        }
+        StringBuilder parallel = new StringBuilder();
+        t.render(parallel, pool);
+        assertEquals(t.render(), parallel.toString());
+      }
+
+      Table small = new Table(2);
+      small.addCell("abc");
+      small.addCell("def");
+      StringBuilder parallel = new StringBuilder();
+      small.render(parallel, pool);
+      assertEquals(small.render(), parallel.toString());
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  public void testAddRows() {
+    Table expected = new Table(3, BorderStyle.CLASSIC, ShownBorders.ALL);
+    String[] contents = { "a", "bc", null, "def", "g", "hi", "jk", null,
+        null, "lmn", null, null, "o", "p", "q", "r", "s", "t", null, null,
+        null };
+    for (String content : contents) {
+      expected.addCell(content);
+    }
+
+    Table t = new Table(3, BorderStyle.CLASSIC, ShownBorders.ALL);
+    t.addRow("a", "bc");
+    t.addRows(Arrays.asList(new String[][] { { "def", "g", "hi" },
+        { "jk" } }));
+    t.addCell("lmn");
+    t.addColumnarBatch(new String[][] { { "o", "r" }, { "p", "s" },
+        { "q", "t" } });
+    t.addRow(new String[0], new CellStyle());
+    assertEquals(expected.render(), t.render());
+
+    try {
+      t.addRow("a", "b", "c", "d");
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    try {
+      t.addColumnarBatch(new String[][] { { "a", "b" }, { "c" } });
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  public void testColumnStyle() {
+    Table t = new Table(2, BorderStyle.CLASSIC, ShownBorders.ALL, false, "");
+    t.setColumnStyle(1, CellStyle.valueOf(HorizontalAlign.right,
+        AbbreviationStyle.crop, NullStyle.nullText));
+    t.addCell("abc");
+    t.addCell("d");
+    t.addRow("e");
+    t.addCell("fg", CellStyle.DEFAULT);
+    t.addCell("h", CellStyle.DEFAULT);
+    assertEquals("" //
+        + "+---+------+\n" //
+        + "|abc|     d|\n" //
+        + "+---+------+\n" //
+        + "|e  |<null>|\n" //
+        + "+---+------+\n" //
+        + "|fg |h     |\n" //
+        + "+---+------+", t.render());
+  }
+
+  public void testMaxWidth() {
+    Table t = new Table(3, BorderStyle.CLASSIC, ShownBorders.ALL, false, "");
+    t.addRow("id", "description long text", "name abc");
+    t.addRow("7", "short", "x");
+    t.setMaxWidth(25);
+    assertEquals("" //
+        + "+--+-----------+--------+\n" //
+        + "|id|descript...|name abc|\n" //
+        + "+--+-----------+--------+\n" //
+        + "|7 |short      |x       |\n" //
+        + "+--+-----------+--------+", t.render());
+
+    t.setColumnPriority(1, 1);
+    assertEquals("" //
+        + "+-+-------------------+-+\n" //
+        + "|.|description long...|.|\n" //
+        + "+-+-------------------+-+\n" //
+        + "|7|short              |x|\n" //
+        + "+-+-------------------+-+", t.render());
+
+    t.setMaxWidth(0);
+    assertEquals("" //
+        + "+--+---------------------+--------+\n" //
+        + "|id|description long text|name abc|\n" //
+        + "+--+---------------------+--------+\n" //
+        + "|7 |short                |x       |\n" //
+        + "+--+---------------------+--------+", t.render());
+  }
+
+  public void testWrap() throws IOException {
+    CellStyle wrap = CellStyle.valueOf(HorizontalAlign.left,
+        AbbreviationStyle.wrap, NullStyle.emptyString);
+    CellStyle wrapCenter = CellStyle.valueOf(HorizontalAlign.center,
+        AbbreviationStyle.wrap, NullStyle.emptyString);
+    Table t = new Table(3, BorderStyle.CLASSIC, ShownBorders.ALL, false, "");
+    t.setColumnWidth(1, 0, 12);
+    t.setColumnStyle(1, wrap);
+    t.addRow("id", "The quick brown fox jumps over the lazy dog", "x");
+    t.addCell("2");
+    t.addCell("line one\nline two is long\r\nend");
+    t.addCell("multi\nline", wrapCenter);
+    t.addRow("3", "supercalifragilisticexpialidocious", "");
+    String expected = "" //
+        + "+--+------------+-----+\n" //
+        + "|id|The quick   |x    |\n" //
+        + "|  |brown fox   |     |\n" //
+        + "|  |jumps over  |     |\n" //
+        + "|  |the lazy dog|     |\n" //
+        + "+--+------------+-----+\n" //
+        + "|2 |line one    |multi|\n" //
+        + "|  |line two is |line |\n" //
+        + "|  |long        |     |\n" //
+        + "|  |end         |     |\n" //
+        + "+--+------------+-----+\n" //
+        + "|3 |supercalifra|     |\n" //
+        + "|  |gilisticexpi|     |\n" //
+        + "|  |alidocious  |     |\n" //
+        + "+--+------------+-----+";
+    assertEquals(expected, t.render());
+
+    StringBuilder sb = new StringBuilder();
+    for (String line : t.renderAsStringArray()) {
+      sb.append(sb.length() > 0 ? "\n" : "").append(line);
+    }
+    assertEquals(expected, sb.toString());
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    t.writeTo(out);
+    assertEquals(expected, out.toString("UTF-8"));
+  }
+
+  public void testStyleSubclass() {
+    CellStyle brackets = new CellStyle() {
+      public int getWidth(final String txt) {
+        return CellStyle.DEFAULT.getWidth(txt) + 2;
+      }
+
+      public String render(final String txt, final int width) {
+        return "[" + CellStyle.DEFAULT.render(txt, width - 2) + "]";
+      }
+    };
+    Table t = new Table(2, BorderStyle.CLASSIC, ShownBorders.ALL, false, "");
+    t.addCell("abc", brackets);
+    t.addCell("de");
+    t.addCell("f", brackets);
+    t.addCell("ghi");
+    assertEquals("" //
+        + "+-----+---+\n" //
+        + "|[abc]|de |\n" //
+        + "+-----+---+\n" //
+        + "|[f  ]|ghi|\n" //
+        + "+-----+---+", t.render());
+  }
+
+  public void testWrapLongLine() {
+    StringBuilder content = new StringBuilder();
+    while (content.length() < 1000000) {
+      content.append("abcd efgh ");
+    }
+    Table t = new Table(1, BorderStyle.CLASSIC, ShownBorders.NONE, false, "");
+    t.setColumnWidth(0, 0, 40);
+    t.addCell(content.toString(), CellStyle.valueOf(HorizontalAlign.left,
+        AbbreviationStyle.wrap, NullStyle.emptyString));
+    long start = System.nanoTime();
+    String[] lines = t.render().split("\n");
+    long millis = (System.nanoTime() - start) / 1000000;
+    assertEquals(25000, lines.length);
+    assertEquals("abcd efgh abcd efgh abcd efgh abcd efgh ", lines[24999]);
+    // Wrapping is linear in the content length; a quadratic wrapping takes
+    // minutes here.
+    assertTrue("Wrapping took " + millis + "ms", millis < 5000);
+  }
+
+  public void testRenderRows() throws IOException {
+    Table t = new Table(3, BorderStyle.CLASSIC, ShownBorders.ALL, false, "");
+    t.addRow("Name", "Qty", "Price");
+    t.addRow("abc", "1", "10");
+    t.addCell("spans two", 2);
+    t.addCell("20");
+    t.addRow("def", "3", "30");
+    t.addRow("Total", "", "60");
+
+    StringBuilder sb = new StringBuilder();
+    t.render(2, 4, sb);
+    assertEquals("" //
+        + "+---------+-----+\n" //
+        + "|spans two|20   |\n" //
+        + "+---------+-----+\n" //
+        + "|def  |3  |30   |", sb.toString());
+
+    sb.setLength(0);
+    t.render(3, 5, sb);
+    assertEquals("" //
+        + "+---------+-----+\n" //
+        + "|def  |3  |30   |\n" //
+        + "+-----+---+-----+\n" //
+        + "|Total|   |60   |\n" //
+        + "+-----+---+-----+", sb.toString());
+
+    // Any split renders the same as the whole table
+    String all = t.render();
+    for (int split = 1; split < 5; split++) {
+      StringBuilder first = new StringBuilder();
+      t.render(0, split, first);
+      StringBuilder second = new StringBuilder();
+      t.render(split, 5, second);
+      assertEquals(all, first + "\n" + second);
+    }
+
+    sb.setLength(0);
+    t.render(2, 2, sb);
+    assertEquals("", sb.toString());
+    try {
+      t.render(4, 6, sb);
+      fail();
+    } catch (IllegalArgumentException e) {
+      // OK
+    }
+  }
+
 }
@@ -0,0 +1,71 @@
+package org.nocrala.tools.utils;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import junit.framework.TestCase;
+
+public class FillerTests extends TestCase {
+
+  public FillerTests(final String txt) {
+    super(txt);
+  }
+
+  public void testGetFiller() {
+    assertEquals("", Filler.getFiller(0));
+    assertEquals("", Filler.getFiller(-3));
+    assertEquals("   ", Filler.getFiller(3));
+    assertEquals("-=-=", Filler.getFiller("-=", 2));
+    assertEquals("", Filler.getFiller("", 5));
+    String wide = Filler.getFiller(1000);
+    assertEquals(1000, wide.length());
+    assertEquals("", wide.trim());
+    assertEquals(600, Filler.getFiller("ab", 300).length());
+  }
+
+  public void testAppendFiller() {
+    StringBuilder sb = new StringBuilder("x");
+    Filler.appendFiller(sb, 2);
+    Filler.appendFiller(sb, "-+", 3);
+    assertEquals("x  -+-+-+", sb.toString());
+  }
+
+  public void testAppendFill() throws IOException {
+    StringBuilder sb = new StringBuilder();
+    Filler.appendFill(sb, "ab", 3);
+    assertEquals("ababab", sb.toString());
+
+    StringWriter w = new StringWriter();
+    Filler.appendFill(w, "=", 4);
+    Filler.appendFill(w, " ", 600);
+    assertEquals(604, w.toString().length());
+    assertTrue(w.toString().startsWith("==== "));
+    assertEquals("", w.toString().substring(4).trim());
+  }
+
+  public void testNullAndOverflow() throws IOException {
+    assertEquals("nullnull", Filler.getFiller(null, 2));
+    StringBuilder sb = new StringBuilder();
+    Filler.appendFiller(sb, null, 1);
+    Filler.appendFill(sb, null, 1);
+    assertEquals("nullnull", sb.toString());
+    try {
+      Filler.getFiller("abc", Integer.MAX_VALUE / 2);
+      fail("The fill length overflows an int.");
+    } catch (IllegalArgumentException e) {
+      // OK
+    }
+  }
+
+  public void testWiderThanRun() {
+    StringBuilder expected = new StringBuilder();
+    for (int i = 0; i < 700; i++) {
+      expected.append("xy");
+    }
+    assertEquals(expected.toString(), Filler.getFiller("xy", 700));
+    StringBuilder sb = new StringBuilder();
+    Filler.appendFiller(sb, "xy", 700);
+    assertEquals(expected.toString(), sb.toString());
+  }
+
+}
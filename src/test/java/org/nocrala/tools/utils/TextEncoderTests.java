@@ -0,0 +1,52 @@
+package org.nocrala.tools.utils;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import junit.framework.TestCase;
+
+public class TextEncoderTests extends TestCase {
+
+  public TextEncoderTests(final String txt) {
+    super(txt);
+  }
+
+  public void testEscapeXml() throws IOException {
+    assertNull(TextEncoder.escapeXml(null));
+    String clean = "plain text 123";
+    assertSame(clean, TextEncoder.escapeXml(clean));
+    assertEquals("a&#60;b&#62; &#38; &#39;c&#34;&#9;&#233;",
+        TextEncoder.escapeXml("a<b> & 'c\"\t\u00E9"));
+
+    StringWriter w = new StringWriter();
+    TextEncoder.escapeXml(new StringBuilder("<x>y"), w);
+    assertEquals("&#60;x&#62;y", w.toString());
+  }
+
+  public void testAllChars() {
+    StringBuilder sb = new StringBuilder();
+    for (char c = 0; c < 512; c++) {
+      sb.append(c);
+    }
+    String txt = sb.toString();
+    assertEquals(referenceEscapeXml(txt), TextEncoder.escapeXml(txt));
+    assertEquals(0, TextEncoder.indexOfXmlEscape(txt, 0));
+    assertEquals('"', TextEncoder.indexOfXmlEscape(txt, 32));
+    assertEquals(-1, TextEncoder.indexOfXmlEscape("abc", 0));
+  }
+
+  private static String referenceEscapeXml(final String txt) {
+    StringBuffer sb = new StringBuffer();
+    for (int i = 0; i < txt.length(); i++) {
+      char c = txt.charAt(i);
+      if (c < 32 || c > 127 || c == '<' || c == '>' || c == '&' || c == '\''
+          || c == '\"') {
+        sb.append("&#" + (int) c + ";");
+      } else {
+        sb.append(c);
+      }
+    }
+    return sb.toString();
+  }
+
+}